@@ -18,13 +18,67 @@
 #include <errno.h>
 #include <jni/net_elytrium_pcap_PcapNative.h>
 #include <pcap/pcap.h>
+#include <poll.h>
+#include <stdint.h>
+#include <string.h>
 #include <threads.h>
 
+#ifdef __linux__
+#include <linux/if_packet.h>
+#include <sys/epoll.h>
+#include <sys/eventfd.h>
+#include <sys/socket.h>
+#include <unistd.h>
+
+#define EPOLL_MAX_EVENTS 256
+#endif
+
+#define BATCH_ALIGN(size) (((size) + 7) & ~((size_t) 7))
+
+// Layout of the aggregation table in 64-bit slots (packets, bytes pairs); keep in sync with AggregationTable.
+#define AGGREGATE_PACKETS 0
+#define AGGREGATE_BYTES 1
+#define AGGREGATE_UNPARSED 2
+#define AGGREGATE_PORT_SHIFT 3
+#define AGGREGATE_ETHER_TYPES 4
+#define AGGREGATE_IP_PROTOCOLS (AGGREGATE_ETHER_TYPES + 65536 * 2)
+#define AGGREGATE_TCP_PORTS (AGGREGATE_IP_PROTOCOLS + 256 * 2)
+#define AGGREGATE_IPV6_MAX_EXTENSIONS 8
+
 typedef struct {
   JNIEnv *env;
   jobject handler;
 } jni_callback_t;
 
+typedef struct {
+  JNIEnv *env;
+  jobject handler;
+  jobject view;
+  pcap_t *handle;
+} jni_view_callback_t;
+
+typedef struct {
+  pcap_dumper_t *dumper;
+  uint64_t *progress;
+} record_callback_t;
+
+typedef struct {
+  uint64_t *table;
+  int datalink;
+  int port_shift;
+} aggregate_callback_t;
+
+typedef struct {
+  JNIEnv *env;
+  jobject handler;
+  jobject batch;
+  pcap_t *handle;
+  u_char *buffer;
+  size_t capacity;
+  size_t position;
+  jint count;
+} jni_batch_callback_t;
+
 thread_local char errbuf[PCAP_ERRBUF_SIZE];
 
 JNIEXPORT jboolean JNICALL Java_net_elytrium_pcap_PcapNative_isJavaCritical(JNIEnv *env, jclass class) {
@@ -257,6 +311,137 @@ JNIEXPORT jint JNICALL Java_net_elytrium_pcap_PcapNative_dispatch(JNIEnv *env, j
   return pcap_dispatch((pcap_t *) handle, count, pcap_handler_callback, (u_char *) &callback);
 }
 
+void pcap_view_callback(u_char *user, const struct pcap_pkthdr *header, const u_char *bytes) {
+  jni_view_callback_t *callback = (jni_view_callback_t *) user;
+  JNIEnv *env = callback->env;
+  if ((*env)->ExceptionCheck(env)) {
+    return;
+  }
+
+  static jmethodID method = NULL;
+  if (!method) {
+    jclass class = (*env)->FindClass(env, "net/elytrium/pcap/PcapViewHandler");
+    method = (*env)->GetMethodID(env, class, "handleNative", "(Lnet/elytrium/pcap/data/PcapPacketView;JJ)V");
+  }
+
+  (*env)->CallVoidMethod(env, callback->handler, method, callback->view, (jlong) header, (jlong) bytes);
+  if ((*env)->ExceptionCheck(env)) {
+    pcap_breakloop(callback->handle);
+  }
+}
+
+JNIEXPORT jint JNICALL Java_net_elytrium_pcap_PcapNative_loopView(
+  JNIEnv *env, jclass class, jlong handle, jint count, jobject view, jobject handler) {
+  jni_view_callback_t callback;
+  callback.env = env;
+  callback.handler = handler;
+  callback.view = view;
+  callback.handle = (pcap_t *) handle;
+  return pcap_loop((pcap_t *) handle, count, pcap_view_callback, (u_char *) &callback);
+}
+
+JNIEXPORT jint JNICALL Java_net_elytrium_pcap_PcapNative_dispatchView(
+  JNIEnv *env, jclass class, jlong handle, jint count, jobject view, jobject handler) {
+  jni_view_callback_t callback;
+  callback.env = env;
+  callback.handler = handler;
+  callback.view = view;
+  callback.handle = (pcap_t *) handle;
+  return pcap_dispatch((pcap_t *) handle, count, pcap_view_callback, (u_char *) &callback);
+}
+
+static void pcap_batch_flush(jni_batch_callback_t *callback) {
+  JNIEnv *env = callback->env;
+  if (!callback->count || (*env)->ExceptionCheck(env)) {
+    return;
+  }
+
+  static jmethodID method = NULL;
+  if (!method) {
+    jclass class = (*env)->FindClass(env, "net/elytrium/pcap/data/PcapBatch");
+    method = (*env)->GetMethodID(env, class, "handleNative", "(Lnet/elytrium/pcap/BatchHandler;II)V");
+  }
+
+  (*env)->CallVoidMethod(env, callback->batch, method, callback->handler, callback->count, (jint) callback->position);
+  callback->count = 0;
+  callback->position = 0;
+
+  if ((*env)->ExceptionCheck(env)) {
+    pcap_breakloop(callback->handle);
+  }
+}
+
+void pcap_batch_callback(u_char *user, const struct pcap_pkthdr *header, const u_char *bytes) {
+  jni_batch_callback_t *callback = (jni_batch_callback_t *) user;
+  if ((*callback->env)->ExceptionCheck(callback->env)) {
+    return;
+  }
+
+  size_t caplen = header->caplen;
+  if (caplen > callback->capacity - sizeof(struct pcap_pkthdr)) {
+    caplen = callback->capacity - sizeof(struct pcap_pkthdr);
+  }
+
+  size_t size = BATCH_ALIGN(sizeof(struct pcap_pkthdr) + caplen);
+  if (callback->position + size > callback->capacity) {
+    pcap_batch_flush(callback);
+    if ((*callback->env)->ExceptionCheck(callback->env)) {
+      return;
+    }
+  }
+
+  struct pcap_pkthdr *record = (struct pcap_pkthdr *) (callback->buffer + callback->position);
+  *record = *header;
+  record->caplen = caplen;
+  memcpy(record + 1, bytes, caplen);
+  callback->position += size;
+  callback->count++;
+}
+
+static void pcap_batch_init(JNIEnv *env, jni_batch_callback_t *callback, jlong handle, jobject buffer, jobject batch, jobject handler) {
+  callback->env = env;
+  callback->handler = handler;
+  callback->batch = batch;
+  callback->handle = (pcap_t *) handle;
+  callback->buffer = (*env)->GetDirectBufferAddress(env, buffer);
+  callback->capacity = (*env)->GetDirectBufferCapacity(env, buffer) & ~((jlong) 7);
+  callback->position = 0;
+  callback->count = 0;
+}
+
+JNIEXPORT jint JNICALL Java_net_elytrium_pcap_PcapNative_dispatchBatch(
+  JNIEnv *env, jclass class, jlong handle, jint count, jobject buffer, jobject batch, jobject handler) {
+  jni_batch_callback_t callback;
+  pcap_batch_init(env, &callback, handle, buffer, batch, handler);
+  int status = pcap_dispatch((pcap_t *) handle, count, pcap_batch_callback, (u_char *) &callback);
+  pcap_batch_flush(&callback);
+  return status;
+}
+
+JNIEXPORT jint JNICALL Java_net_elytrium_pcap_PcapNative_loopBatch(
+  JNIEnv *env, jclass class, jlong handle, jint count, jobject buffer, jobject batch, jobject handler) {
+  jni_batch_callback_t callback;
+  pcap_batch_init(env, &callback, handle, buffer, batch, handler);
+
+  int offline = pcap_file((pcap_t *) handle) != NULL;
+  int remaining = count;
+  while (count <= 0 || remaining > 0) {
+    int status = pcap_dispatch((pcap_t *) handle, count <= 0 ? -1 : remaining, pcap_batch_callback, (u_char *) &callback);
+    pcap_batch_flush(&callback);
+    if (status < 0) {
+      return status;
+    } else if ((*env)->ExceptionCheck(env)) {
+      return PCAP_ERROR_BREAK;
+    } else if (status == 0 && offline) {
+      break;
+    }
+
+    remaining -= status;
+  }
+
+  return 0;
+}
+
 JNIEXPORT jint JNICALL Java_net_elytrium_pcap_PcapNative_next(JNIEnv *env, jclass class, jlong handle, jlongArray jheader, jobjectArray jbuffer) {
   struct pcap_pkthdr *header;
   const u_char *bytes;
@@ -271,6 +456,18 @@ JNIEXPORT jint JNICALL Java_net_elytrium_pcap_PcapNative_next(JNIEnv *env, jclas
   return status;
 }
 
+JNIEXPORT jint JNICALL Java_net_elytrium_pcap_PcapNative_nextInto(JNIEnv *env, jclass class, jlong handle, jlongArray jaddresses) {
+  struct pcap_pkthdr *header;
+  const u_char *bytes;
+  int status = pcap_next_ex((pcap_t *) handle, &header, &bytes);
+  if (status == 1) {
+    jlong addresses[2] = { (jlong) header, (jlong) bytes };
+    (*env)->SetLongArrayRegion(env, jaddresses, 0, 2, addresses);
+  }
+
+  return status;
+}
+
 JNIEXPORT void JNICALL Java_net_elytrium_pcap_PcapNative_breakLoop(JNIEnv *env, jclass class, jlong handle) {
   pcap_breakloop((pcap_t *) handle);
 }
@@ -363,6 +560,155 @@ JNIEXPORT jint JNICALL Java_net_elytrium_pcap_PcapNative_fileno(JNIEnv *env, jcl
   return pcap_fileno((pcap_t *) handle);
 }
 
+JNIEXPORT jint JNICALL Java_net_elytrium_pcap_PcapNative_getSelectableFd(JNIEnv *env, jclass class, jlong handle) {
+  return pcap_get_selectable_fd((pcap_t *) handle);
+}
+
+JNIEXPORT jint JNICALL Java_net_elytrium_pcap_PcapNative_getRequiredSelectTimeout(JNIEnv *env, jclass class, jlong handle) {
+  const struct timeval *timeout = pcap_get_required_select_timeout((pcap_t *) handle);
+  if (timeout) {
+    return (jint) (timeout->tv_sec * 1000 + (timeout->tv_usec + 999) / 1000);
+  } else {
+    return -1;
+  }
+}
+
+JNIEXPORT jint JNICALL Java_net_elytrium_pcap_PcapNative_pollReadable(JNIEnv *env, jclass class, jint fd, jint timeout) {
+  struct pollfd pollfd;
+  pollfd.fd = fd;
+  pollfd.events = POLLIN;
+  pollfd.revents = 0;
+  int count = poll(&pollfd, 1, timeout);
+  if (count < 0) {
+    if (errno == EINTR) {
+      return 0;
+    }
+
+    snprintf(errbuf, PCAP_ERRBUF_SIZE, "poll: %s", strerror(errno));
+    return -1;
+  }
+
+  return count;
+}
+
+#ifdef __linux__
+JNIEXPORT jint JNICALL Java_net_elytrium_pcap_PcapNative_epollCreate(JNIEnv *env, jclass class) {
+  int fd = epoll_create1(EPOLL_CLOEXEC);
+  if (fd < 0) {
+    snprintf(errbuf, PCAP_ERRBUF_SIZE, "epoll_create1: %s", strerror(errno));
+  }
+
+  return fd;
+}
+
+JNIEXPORT jint JNICALL Java_net_elytrium_pcap_PcapNative_epollCtl(JNIEnv *env, jclass class, jint epfd, jint op, jint fd, jint events, jint data) {
+  struct epoll_event event;
+  event.events = (uint32_t) events;
+  event.data.u64 = 0;
+  event.data.u32 = (uint32_t) data;
+  if (epoll_ctl(epfd, op, fd, &event)) {
+    snprintf(errbuf, PCAP_ERRBUF_SIZE, "epoll_ctl: %s", strerror(errno));
+    return -1;
+  }
+
+  return 0;
+}
+
+JNIEXPORT jint JNICALL Java_net_elytrium_pcap_PcapNative_epollWait(JNIEnv *env, jclass class, jint epfd, jintArray jready, jint timeout) {
+  struct epoll_event events[EPOLL_MAX_EVENTS];
+  jint ready[EPOLL_MAX_EVENTS];
+  int length = (*env)->GetArrayLength(env, jready);
+  int count = epoll_wait(epfd, events, length < EPOLL_MAX_EVENTS ? length : EPOLL_MAX_EVENTS, timeout);
+  if (count < 0) {
+    if (errno == EINTR) {
+      return 0;
+    }
+
+    snprintf(errbuf, PCAP_ERRBUF_SIZE, "epoll_wait: %s", strerror(errno));
+    return -1;
+  }
+
+  for (int i = 0; i < count; i++) {
+    ready[i] = (jint) events[i].data.u32;
+  }
+
+  (*env)->SetIntArrayRegion(env, jready, 0, count, ready);
+  return count;
+}
+
+JNIEXPORT jint JNICALL Java_net_elytrium_pcap_PcapNative_eventfdCreate(JNIEnv *env, jclass class) {
+  int fd = eventfd(0, EFD_CLOEXEC | EFD_NONBLOCK);
+  if (fd < 0) {
+    snprintf(errbuf, PCAP_ERRBUF_SIZE, "eventfd: %s", strerror(errno));
+  }
+
+  return fd;
+}
+
+JNIEXPORT void JNICALL Java_net_elytrium_pcap_PcapNative_eventfdSignal(JNIEnv *env, jclass class, jint fd) {
+  eventfd_write(fd, 1);
+}
+
+JNIEXPORT void JNICALL Java_net_elytrium_pcap_PcapNative_eventfdDrain(JNIEnv *env, jclass class, jint fd) {
+  eventfd_t value;
+  eventfd_read(fd, &value);
+}
+
+JNIEXPORT void JNICALL Java_net_elytrium_pcap_PcapNative_closeFd(JNIEnv *env, jclass class, jint fd) {
+  close(fd);
+}
+#else
+JNIEXPORT jint JNICALL Java_net_elytrium_pcap_PcapNative_epollCreate(JNIEnv *env, jclass class) {
+  snprintf(errbuf, PCAP_ERRBUF_SIZE, "epoll is not supported on this platform.");
+  return -1;
+}
+
+JNIEXPORT jint JNICALL Java_net_elytrium_pcap_PcapNative_epollCtl(JNIEnv *env, jclass class, jint epfd, jint op, jint fd, jint events, jint data) {
+  snprintf(errbuf, PCAP_ERRBUF_SIZE, "epoll is not supported on this platform.");
+  return -1;
+}
+
+JNIEXPORT jint JNICALL Java_net_elytrium_pcap_PcapNative_epollWait(JNIEnv *env, jclass class, jint epfd, jintArray jready, jint timeout) {
+  snprintf(errbuf, PCAP_ERRBUF_SIZE, "epoll is not supported on this platform.");
+  return -1;
+}
+
+JNIEXPORT jint JNICALL Java_net_elytrium_pcap_PcapNative_eventfdCreate(JNIEnv *env, jclass class) {
+  snprintf(errbuf, PCAP_ERRBUF_SIZE, "eventfd is not supported on this platform.");
+  return -1;
+}
+
+JNIEXPORT void JNICALL Java_net_elytrium_pcap_PcapNative_eventfdSignal(JNIEnv *env, jclass class, jint fd) {
+}
+
+JNIEXPORT void JNICALL Java_net_elytrium_pcap_PcapNative_eventfdDrain(JNIEnv *env, jclass class, jint fd) {
+}
+
+JNIEXPORT void JNICALL Java_net_elytrium_pcap_PcapNative_closeFd(JNIEnv *env, jclass class, jint fd) {
+}
+#endif
+
+JNIEXPORT jint JNICALL Java_net_elytrium_pcap_PcapNative_setFanout(JNIEnv *env, jclass class, jlong handle, jint group, jint type) {
+#ifdef PACKET_FANOUT
+  int fd = pcap_fileno((pcap_t *) handle);
+  if (fd < 0) {
+    snprintf(errbuf, PCAP_ERRBUF_SIZE, "The handle has no capture socket, it must be activated first.");
+    return PCAP_ERROR;
+  }
+
+  int value = (group & 0xFFFF) | (type << 16);
+  if (setsockopt(fd, SOL_PACKET, PACKET_FANOUT, &value, sizeof(value))) {
+    snprintf(errbuf, PCAP_ERRBUF_SIZE, "setsockopt(PACKET_FANOUT): %s", strerror(errno));
+    return PCAP_ERROR;
+  }
+
+  return 0;
+#else
+  snprintf(errbuf, PCAP_ERRBUF_SIZE, "PACKET_FANOUT is not supported on this platform.");
+  return PCAP_ERROR;
+#endif
+}
+
 JNIEXPORT jlong JNICALL Java_net_elytrium_pcap_PcapNative_dumpOpen(JNIEnv *env, jclass class, jlong handle, jstring jfname) {
   const char *fname = (*env)->GetStringUTFChars(env, jfname, NULL);
   pcap_dumper_t *dumper = pcap_dump_open((pcap_t *) handle, fname);
@@ -394,6 +740,138 @@ JNIEXPORT void JNICALL Java_net_elytrium_pcap_PcapNative_dump(JNIEnv *env, jclas
   pcap_dump((u_char *) handle, (struct pcap_pkthdr *) header, address);
 }
 
+void pcap_record_callback(u_char *user, const struct pcap_pkthdr *header, const u_char *bytes) {
+  record_callback_t *record = (record_callback_t *) user;
+  pcap_dump((u_char *) record->dumper, header, bytes);
+
+  // Single writer, so plain reads are fine; release stores let a Java thread read the counters with getLongVolatile.
+  uint64_t *progress = record->progress;
+  if (progress) {
+    __atomic_store_n(&progress[0], progress[0] + 1, __ATOMIC_RELEASE);
+    __atomic_store_n(&progress[1], progress[1] + header->caplen, __ATOMIC_RELEASE);
+    __atomic_store_n(&progress[2], progress[2] + header->len, __ATOMIC_RELEASE);
+  }
+}
+
+JNIEXPORT jint JNICALL Java_net_elytrium_pcap_PcapNative_recordTo(
+    JNIEnv *env, jclass class, jlong handle, jlong dumper, jint count, jlong progress) {
+  record_callback_t record;
+  record.dumper = (pcap_dumper_t *) dumper;
+  record.progress = (uint64_t *) progress;
+  return pcap_loop((pcap_t *) handle, count, pcap_record_callback, (u_char *) &record);
+}
+
+static inline void aggregate_add(uint64_t *table, int slot, uint64_t bytes) {
+  __atomic_store_n(&table[slot], table[slot] + 1, __ATOMIC_RELAXED);
+  __atomic_store_n(&table[slot + 1], table[slot + 1] + bytes, __ATOMIC_RELAXED);
+}
+
+static inline uint16_t aggregate_read_u16(const u_char *bytes) {
+  return (uint16_t) (bytes[0] << 8 | bytes[1]);
+}
+
+void pcap_aggregate_callback(u_char *user, const struct pcap_pkthdr *header, const u_char *bytes) {
+  aggregate_callback_t *aggregate = (aggregate_callback_t *) user;
+  uint64_t *table = aggregate->table;
+  uint32_t caplen = header->caplen;
+  uint64_t len = header->len;
+  aggregate_add(table, AGGREGATE_PACKETS, len);
+
+  uint32_t offset;
+  uint16_t ether_type;
+  switch (aggregate->datalink) {
+    case DLT_EN10MB:
+      if (caplen < 14) {
+        goto unparsed;
+      }
+
+      ether_type = aggregate_read_u16(bytes + 12);
+      offset = 14;
+      while ((ether_type == 0x8100 || ether_type == 0x88A8) && caplen >= offset + 4) {
+        ether_type = aggregate_read_u16(bytes + offset + 2);
+        offset += 4;
+      }
+      break;
+    case DLT_LINUX_SLL:
+      if (caplen < 16) {
+        goto unparsed;
+      }
+
+      ether_type = aggregate_read_u16(bytes + 14);
+      offset = 16;
+      break;
+    case DLT_RAW:
+      if (caplen < 1) {
+        goto unparsed;
+      }
+
+      ether_type = bytes[0] >> 4 == 4 ? 0x0800 : bytes[0] >> 4 == 6 ? 0x86DD : 0;
+      offset = 0;
+      break;
+    default:
+      goto unparsed;
+  }
+
+  aggregate_add(table, AGGREGATE_ETHER_TYPES + ether_type * 2, len);
+
+  uint8_t protocol;
+  int has_ports;
+  if (ether_type == 0x0800) {
+    if (caplen < offset + 20) {
+      return;
+    }
+
+    protocol = bytes[offset + 9];
+    has_ports = (aggregate_read_u16(bytes + offset + 6) & 0x1FFF) == 0;
+    offset += (bytes[offset] & 0x0F) * 4;
+  } else if (ether_type == 0x86DD) {
+    if (caplen < offset + 40) {
+      return;
+    }
+
+    protocol = bytes[offset + 6];
+    has_ports = 1;
+    offset += 40;
+    for (int i = 0; i < AGGREGATE_IPV6_MAX_EXTENSIONS && caplen >= offset + 8; i++) {
+      if (protocol == 0 || protocol == 43 || protocol == 60) {
+        protocol = bytes[offset];
+        offset += (bytes[offset + 1] + 1) * 8;
+      } else if (protocol == 51) {
+        protocol = bytes[offset];
+        offset += (bytes[offset + 1] + 2) * 4;
+      } else if (protocol == 44) {
+        has_ports = (aggregate_read_u16(bytes + offset + 2) & 0xFFF8) == 0;
+        protocol = bytes[offset];
+        offset += 8;
+      } else {
+        break;
+      }
+    }
+  } else {
+    return;
+  }
+
+  aggregate_add(table, AGGREGATE_IP_PROTOCOLS + protocol * 2, len);
+  if (has_ports && (protocol == 6 || protocol == 17) && caplen >= offset + 4) {
+    int buckets = 65536 >> aggregate->port_shift;
+    int base = AGGREGATE_TCP_PORTS + (protocol == 6 ? 0 : buckets * 2);
+    aggregate_add(table, base + (aggregate_read_u16(bytes + offset + 2) >> aggregate->port_shift) * 2, len);
+  }
+
+  return;
+
+unparsed:
+  __atomic_store_n(&table[AGGREGATE_UNPARSED], table[AGGREGATE_UNPARSED] + 1, __ATOMIC_RELAXED);
+}
+
+JNIEXPORT jint JNICALL Java_net_elytrium_pcap_PcapNative_aggregate(JNIEnv *env, jclass class, jlong handle, jint count, jlong table) {
+  aggregate_callback_t aggregate;
+  aggregate.table = (uint64_t *) table;
+  aggregate.datalink = pcap_datalink((pcap_t *) handle);
+  aggregate.port_shift = (int) aggregate.table[AGGREGATE_PORT_SHIFT];
+  return pcap_loop((pcap_t *) handle, count, pcap_aggregate_callback, (u_char *) &aggregate);
+}
+
 JNIEXPORT jstring JNICALL Java_net_elytrium_pcap_PcapNative_libVersion(JNIEnv *env, jclass class) {
   return (*env)->NewStringUTF(env, pcap_lib_version());
 }
\ No newline at end of file
@@ -23,6 +23,8 @@ import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import net.elytrium.pcap.data.PcapBatch;
+import net.elytrium.pcap.data.PcapPacketView;
 
 public class PcapNative {
 
@@ -131,8 +133,18 @@ public class PcapNative {
 
   public static native int dispatch(long handle, int count, PcapHandler handler);
 
+  public static native int dispatchBatch(long handle, int count, ByteBuffer buffer, PcapBatch batch, BatchHandler handler);
+
+  public static native int loopBatch(long handle, int count, ByteBuffer buffer, PcapBatch batch, BatchHandler handler);
+
+  public static native int loopView(long handle, int count, PcapPacketView view, PcapViewHandler handler);
+
+  public static native int dispatchView(long handle, int count, PcapPacketView view, PcapViewHandler handler);
+
   public static native int next(long handle, long[] header, ByteBuffer[] buffer);
 
+  public static native int nextInto(long handle, long[] addresses);
+
   public static native void breakLoop(long handle);
 
   public static native int stats(long handle, long stats);
@@ -173,6 +185,28 @@ public class PcapNative {
 
   public static native int fileno(long handle);
 
+  public static native int getSelectableFd(long handle);
+
+  public static native int getRequiredSelectTimeout(long handle);
+
+  public static native int setFanout(long handle, int group, int type);
+
+  public static native int pollReadable(int fd, int timeout);
+
+  public static native int epollCreate();
+
+  public static native int epollCtl(int epfd, int op, int fd, int events, int data);
+
+  public static native int epollWait(int epfd, int[] ready, int timeout);
+
+  public static native int eventfdCreate();
+
+  public static native void eventfdSignal(int fd);
+
+  public static native void eventfdDrain(int fd);
+
+  public static native void closeFd(int fd);
+
   public static native long dumpOpen(long handle, String fname);
 
   public static native long dumpOpenAppend(long handle, String fname);
@@ -185,5 +219,9 @@ public class PcapNative {
 
   public static native void dump(long handle, long header, ByteBuffer buffer);
 
+  public static native int recordTo(long handle, long dumper, int count, long progress);
+
+  public static native int aggregate(long handle, int count, long table);
+
   public static native String libVersion();
 }
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2022 - 2023 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.pcap.data;
+
+import java.nio.ByteBuffer;
+import net.elytrium.pcap.memory.MemoryReader;
+import net.elytrium.pcap.memory.MemoryUtil;
+import sun.misc.Unsafe;
+
+/**
+ * Off-heap packet and byte counters filled by the native aggregation callback: totals, per EtherType, per IP protocol
+ * and per destination port bucket of TCP and UDP. A bucket covers {@code 1 << portShift} consecutive ports.
+ * The layout is shared with pcap.c.
+ */
+public class AggregationTable {
+
+  private static final Unsafe UNSAFE = MemoryUtil.getUnsafe();
+
+  private static final int PACKETS = 0;
+  private static final int UNPARSED = 2;
+  private static final int PORT_SHIFT = 3;
+  private static final int ETHER_TYPES = 4;
+  private static final int IP_PROTOCOLS = ETHER_TYPES + 65536 * 2;
+  private static final int TCP_PORTS = IP_PROTOCOLS + 256 * 2;
+
+  private final int portShift;
+  private final int buckets;
+  private final int slots;
+  private final ByteBuffer buffer;
+  private final long address;
+
+  public AggregationTable(int portShift) {
+    if (portShift < 0 || portShift > 16) {
+      throw new IllegalArgumentException("portShift should be between 0 and 16");
+    }
+
+    this.portShift = portShift;
+    this.buckets = 65536 >> portShift;
+    this.slots = TCP_PORTS + this.buckets * 4;
+    this.buffer = ByteBuffer.allocateDirect(this.slots * Long.BYTES);
+    this.address = MemoryUtil.getAddress(this.buffer);
+    this.reset();
+  }
+
+  public AggregationTable() {
+    this(0);
+  }
+
+  public long getAddress() {
+    return this.address;
+  }
+
+  public int getPortShift() {
+    return this.portShift;
+  }
+
+  public int getBuckets() {
+    return this.buckets;
+  }
+
+  public long getPackets() {
+    return this.read(PACKETS);
+  }
+
+  public long getBytes() {
+    return this.read(PACKETS + 1);
+  }
+
+  public long getUnparsedPackets() {
+    return this.read(UNPARSED);
+  }
+
+  public long getEtherTypePackets(int etherType) {
+    return this.read(ETHER_TYPES + (etherType & 0xFFFF) * 2);
+  }
+
+  public long getEtherTypeBytes(int etherType) {
+    return this.read(ETHER_TYPES + (etherType & 0xFFFF) * 2 + 1);
+  }
+
+  public long getIpProtocolPackets(int protocol) {
+    return this.read(IP_PROTOCOLS + (protocol & 0xFF) * 2);
+  }
+
+  public long getIpProtocolBytes(int protocol) {
+    return this.read(IP_PROTOCOLS + (protocol & 0xFF) * 2 + 1);
+  }
+
+  public long getTcpPortPackets(int port) {
+    return this.read(TCP_PORTS + this.bucket(port) * 2);
+  }
+
+  public long getTcpPortBytes(int port) {
+    return this.read(TCP_PORTS + this.bucket(port) * 2 + 1);
+  }
+
+  public long getUdpPortPackets(int port) {
+    return this.read(TCP_PORTS + (this.buckets + this.bucket(port)) * 2);
+  }
+
+  public long getUdpPortBytes(int port) {
+    return this.read(TCP_PORTS + (this.buckets + this.bucket(port)) * 2 + 1);
+  }
+
+  /**
+   * Copies the whole table into the target array (allocated if too small), in the slot layout of pcap.c.
+   */
+  public long[] snapshot(long[] target) {
+    long[] snapshot = target != null && target.length >= this.slots ? target : new long[this.slots];
+    MemoryReader reader = new MemoryReader(this.address);
+    for (int i = 0; i < this.slots; i++) {
+      snapshot[i] = reader.readLong();
+    }
+
+    return snapshot;
+  }
+
+  public void reset() {
+    UNSAFE.setMemory(this.address, (long) this.slots * Long.BYTES, (byte) 0);
+    UNSAFE.putLong(this.address + PORT_SHIFT * Long.BYTES, this.portShift);
+  }
+
+  private int bucket(int port) {
+    return (port & 0xFFFF) >> this.portShift;
+  }
+
+  private long read(int slot) {
+    return UNSAFE.getLongVolatile(null, this.address + (long) slot * Long.BYTES);
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2022 - 2023 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.pcap.data;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import net.elytrium.pcap.BatchHandler;
+import net.elytrium.pcap.memory.MemoryUtil;
+
+/**
+ * Direct buffer filled natively with copies of {@code struct pcap_pkthdr} followed by the packet bytes, padded to 8 bytes.
+ * The packet buffer is shared and re-pointed by {@link #next()}.
+ */
+public class PcapBatch {
+
+  public static final int DEFAULT_CAPACITY = 4 * 1024 * 1024;
+  public static final int HEADER_SIZE = 2 * Long.BYTES + 2 * Integer.BYTES;
+
+  private final ByteBuffer buffer;
+  private final ByteBuffer packet;
+  private final long address;
+  private int size;
+  private int limit;
+  private int index = -1;
+  private int offset;
+  private int nextOffset;
+
+  public PcapBatch(int capacity) {
+    if (capacity < HEADER_SIZE + Long.BYTES) {
+      throw new IllegalArgumentException("Batch capacity is too small.");
+    }
+
+    this.buffer = ByteBuffer.allocateDirect(capacity & ~0x7).order(ByteOrder.nativeOrder());
+    this.packet = this.buffer.duplicate();
+    this.address = MemoryUtil.getAddress(this.buffer);
+  }
+
+  public PcapBatch() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public ByteBuffer getByteBuffer() {
+    return this.buffer;
+  }
+
+  public int size() {
+    return this.size;
+  }
+
+  public int getLimit() {
+    return this.limit;
+  }
+
+  public int getIndex() {
+    return this.index;
+  }
+
+  public boolean next() {
+    if (this.index + 1 >= this.size) {
+      return false;
+    }
+
+    this.index++;
+    this.offset = this.nextOffset;
+    int captureLength = this.getCaptureLength();
+    this.nextOffset = this.offset + (HEADER_SIZE + captureLength + 7 & ~0x7);
+    this.packet.limit(this.offset + HEADER_SIZE + captureLength);
+    this.packet.position(this.offset + HEADER_SIZE);
+    return true;
+  }
+
+  public void rewind() {
+    this.index = -1;
+    this.offset = 0;
+    this.nextOffset = 0;
+    this.packet.position(0);
+    this.packet.limit(0);
+  }
+
+  public long getHeaderAddress() {
+    return this.address + this.offset;
+  }
+
+  public long getSeconds() {
+    return this.buffer.getLong(this.offset);
+  }
+
+  public long getMicroseconds() {
+    return this.buffer.getLong(this.offset + Long.BYTES);
+  }
+
+  public int getCaptureLength() {
+    return this.buffer.getInt(this.offset + 2 * Long.BYTES);
+  }
+
+  public int getLength() {
+    return this.buffer.getInt(this.offset + 2 * Long.BYTES + Integer.BYTES);
+  }
+
+  public ByteBuffer getPacket() {
+    return this.packet;
+  }
+
+  public void handleNative(BatchHandler handler, int size, int limit) {
+    this.size = size;
+    this.limit = limit;
+    this.rewind();
+    handler.handle(this);
+  }
+
+  @Override
+  public String toString() {
+    return "PcapBatch{"
+        + "capacity=" + this.buffer.capacity()
+        + ", size=" + this.size
+        + ", limit=" + this.limit
+        + ", index=" + this.index
+        + '}';
+  }
+}
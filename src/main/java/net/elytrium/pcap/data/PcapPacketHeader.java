@@ -47,6 +47,10 @@ public class PcapPacketHeader {
     return this.microseconds;
   }
 
+  public long getEpochNanos(TstampPrecision precision) {
+    return this.seconds * 1_000_000_000L + (precision == TstampPrecision.NANO ? this.microseconds : this.microseconds * 1_000L);
+  }
+
   public int getCaptureLength() {
     return this.captureLength;
   }
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2022 - 2023 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.pcap.data;
+
+import net.elytrium.pcap.memory.MemoryUtil;
+import sun.misc.Unsafe;
+
+public class PcapPacketHeaderView {
+
+  private static final int SECONDS_OFFSET = 0;
+  private static final int MICROSECONDS_OFFSET = Long.BYTES;
+  private static final int CAPTURE_LENGTH_OFFSET = 2 * Long.BYTES;
+  private static final int LENGTH_OFFSET = 2 * Long.BYTES + Integer.BYTES;
+  private static final long NANOS_PER_SECOND = 1_000_000_000L;
+  private static final long NANOS_PER_MICROSECOND = 1_000L;
+
+  private final Unsafe unsafe = MemoryUtil.getUnsafe();
+  private long address;
+  private long subsecondMultiplier;
+
+  public PcapPacketHeaderView(TstampPrecision precision) {
+    this.setPrecision(precision);
+  }
+
+  public PcapPacketHeaderView() {
+    this(TstampPrecision.MICRO);
+  }
+
+  public PcapPacketHeaderView wrap(long address) {
+    this.address = address;
+    return this;
+  }
+
+  public long getAddress() {
+    return this.address;
+  }
+
+  public TstampPrecision getPrecision() {
+    return this.subsecondMultiplier == 1 ? TstampPrecision.NANO : TstampPrecision.MICRO;
+  }
+
+  public void setPrecision(TstampPrecision precision) {
+    this.subsecondMultiplier = precision == TstampPrecision.NANO ? 1 : NANOS_PER_MICROSECOND;
+  }
+
+  public long getSeconds() {
+    return this.unsafe.getLong(this.address + SECONDS_OFFSET);
+  }
+
+  public long getMicroseconds() {
+    return this.unsafe.getLong(this.address + MICROSECONDS_OFFSET);
+  }
+
+  public long getEpochNanos() {
+    return this.getSeconds() * NANOS_PER_SECOND + this.getMicroseconds() * this.subsecondMultiplier;
+  }
+
+  public int getCaptureLength() {
+    return this.unsafe.getInt(this.address + CAPTURE_LENGTH_OFFSET);
+  }
+
+  public int getLength() {
+    return this.unsafe.getInt(this.address + LENGTH_OFFSET);
+  }
+
+  public PcapPacketHeader copy() {
+    return new PcapPacketHeader(this.address, this.getSeconds(), this.getMicroseconds(), this.getCaptureLength(), this.getLength());
+  }
+
+  @Override
+  public String toString() {
+    return "PcapPacketHeaderView{"
+        + "address=" + this.address
+        + ", precision=" + this.getPrecision()
+        + '}';
+  }
+}
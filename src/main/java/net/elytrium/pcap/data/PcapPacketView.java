@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2022 - 2023 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.pcap.data;
+
+import java.nio.ByteBuffer;
+import net.elytrium.pcap.memory.MemoryUtil;
+
+public class PcapPacketView {
+
+  private final PcapPacketHeaderView header;
+  private final ByteBuffer byteBuffer = ByteBuffer.allocateDirect(0);
+
+  public PcapPacketView(TstampPrecision precision) {
+    this.header = new PcapPacketHeaderView(precision);
+  }
+
+  public PcapPacketView() {
+    this(TstampPrecision.MICRO);
+  }
+
+  public PcapPacketView wrap(long headerAddress, long dataAddress) {
+    this.header.wrap(headerAddress);
+    MemoryUtil.wrap(this.byteBuffer, dataAddress, this.header.getCaptureLength());
+    return this;
+  }
+
+  public PcapPacketHeaderView getHeader() {
+    return this.header;
+  }
+
+  public ByteBuffer getByteBuffer() {
+    return this.byteBuffer;
+  }
+
+  @Override
+  public String toString() {
+    return "PcapPacketView{"
+        + "header=" + this.header
+        + ", byteBuffer=" + this.byteBuffer
+        + '}';
+  }
+}
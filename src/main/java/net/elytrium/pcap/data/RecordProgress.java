@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2022 - 2023 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.pcap.data;
+
+import java.nio.ByteBuffer;
+import net.elytrium.pcap.memory.MemoryUtil;
+import sun.misc.Unsafe;
+
+/**
+ * Off-heap counters updated by the native recording callback, readable from any thread while recording runs.
+ */
+public class RecordProgress {
+
+  private static final Unsafe UNSAFE = MemoryUtil.getUnsafe();
+  private static final int SIZE = 24;
+
+  private final ByteBuffer buffer = ByteBuffer.allocateDirect(SIZE);
+  private final long address = MemoryUtil.getAddress(this.buffer);
+
+  public long getAddress() {
+    return this.address;
+  }
+
+  public long getPackets() {
+    return UNSAFE.getLongVolatile(null, this.address);
+  }
+
+  public long getCapturedBytes() {
+    return UNSAFE.getLongVolatile(null, this.address + 8);
+  }
+
+  public long getOriginalBytes() {
+    return UNSAFE.getLongVolatile(null, this.address + 16);
+  }
+
+  public void reset() {
+    UNSAFE.setMemory(this.address, SIZE, (byte) 0);
+  }
+
+  @Override
+  public String toString() {
+    return "RecordProgress{"
+        + "packets=" + this.getPackets()
+        + ", capturedBytes=" + this.getCapturedBytes()
+        + ", originalBytes=" + this.getOriginalBytes()
+        + '}';
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2022 - 2023 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.pcap.file;
+
+import java.nio.ByteBuffer;
+
+class BloomFilter {
+
+  private final long[] bits;
+  private final int hashes;
+  private final long mask;
+
+  BloomFilter(int bitCount, int hashes) {
+    if (Integer.bitCount(bitCount) != 1 || bitCount < Long.SIZE) {
+      throw new IllegalArgumentException("bitCount should be a power of two of at least 64");
+    }
+
+    this.bits = new long[bitCount / Long.SIZE];
+    this.hashes = hashes;
+    this.mask = bitCount - 1;
+  }
+
+  void add(long key) {
+    long hash = mix(key);
+    long step = mix(hash) | 1;
+    for (int i = 0; i < this.hashes; i++) {
+      long bit = hash & this.mask;
+      this.bits[(int) (bit >>> 6)] |= 1L << bit;
+      hash += step;
+    }
+  }
+
+  /**
+   * Tests a filter serialized by {@link #write(ByteBuffer)} at the given index, without copying it.
+   */
+  static boolean mightContain(ByteBuffer buffer, int index, int bitCount, int hashes, long key) {
+    long mask = bitCount - 1;
+    long hash = mix(key);
+    long step = mix(hash) | 1;
+    for (int i = 0; i < hashes; i++) {
+      long bit = hash & mask;
+      if ((buffer.getLong(index + (int) (bit >>> 6) * Long.BYTES) & 1L << bit) == 0) {
+        return false;
+      }
+
+      hash += step;
+    }
+
+    return true;
+  }
+
+  void clear() {
+    for (int i = 0; i < this.bits.length; i++) {
+      this.bits[i] = 0;
+    }
+  }
+
+  void write(ByteBuffer buffer) {
+    for (long word : this.bits) {
+      buffer.putLong(word);
+    }
+  }
+
+  int getByteSize() {
+    return this.bits.length * Long.BYTES;
+  }
+
+  static long mix(long value) {
+    value = (value ^ (value >>> 33)) * 0xFF51AFD7ED558CCDL;
+    value = (value ^ (value >>> 33)) * 0xC4CEB9FE1A85EC53L;
+    return value ^ (value >>> 33);
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2022 - 2023 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.pcap.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+class FileWindow {
+
+  private final FileChannel channel;
+  private final long fileSize;
+  private final int windowSize;
+  private ByteOrder order = ByteOrder.BIG_ENDIAN;
+  private MappedByteBuffer buffer;
+  private ByteBuffer slice;
+  private long start;
+
+  FileWindow(FileChannel channel, long fileSize, int windowSize) {
+    this.channel = channel;
+    this.fileSize = fileSize;
+    this.windowSize = windowSize;
+  }
+
+  long getFileSize() {
+    return this.fileSize;
+  }
+
+  void order(ByteOrder order) {
+    this.order = order;
+    if (this.buffer != null) {
+      this.buffer.order(order);
+    }
+  }
+
+  /**
+   * Makes [position, position + length) readable, remapping if needed, and returns its index in {@link #buffer()}.
+   */
+  int map(long position, int length) throws IOException {
+    if (this.buffer == null || position < this.start || position + length > this.start + this.buffer.limit()) {
+      long size = Math.min(Math.max(this.windowSize, length), this.fileSize - position);
+      if (size < length) {
+        throw new IOException("Truncated data at offset " + position);
+      }
+
+      this.buffer = this.channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+      this.buffer.order(this.order);
+      this.slice = this.buffer.duplicate();
+      this.start = position;
+    }
+
+    return (int) (position - this.start);
+  }
+
+  MappedByteBuffer buffer() {
+    return this.buffer;
+  }
+
+  ByteBuffer slice(int index, int length) {
+    this.slice.limit(index + length).position(index);
+    return this.slice;
+  }
+}
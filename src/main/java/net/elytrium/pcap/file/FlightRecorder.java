@@ -0,0 +1,283 @@
+/*
+ * Copyright (C) 2022 - 2023 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.pcap.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import net.elytrium.pcap.PcapException;
+import net.elytrium.pcap.PcapViewHandler;
+import net.elytrium.pcap.data.PcapPacketHeader;
+import net.elytrium.pcap.data.PcapPacketHeaderView;
+import net.elytrium.pcap.data.TstampPrecision;
+import net.elytrium.pcap.handle.PcapDumper;
+import net.elytrium.pcap.layer.data.LinkType;
+import net.elytrium.pcap.memory.MemoryUtil;
+import sun.misc.Unsafe;
+
+/**
+ * Always-on capture ring: keeps the most recent packets, bounded by capacity in bytes and optionally by age, in a
+ * preallocated off-heap buffer laid out as pcap records. Recording costs one {@code copyMemory} per packet.
+ * {@link #snapshot()} and the {@code trigger} methods copy the ring from another thread without pausing the recorder:
+ * the copy is validated against the oldest retained record afterwards, seqlock style, and anything overwritten
+ * meanwhile is dropped from the copy. Recording itself must happen on a single thread.
+ */
+public class FlightRecorder implements PcapViewHandler {
+
+  private static final Unsafe UNSAFE = MemoryUtil.getUnsafe();
+  private static final int RECORD_HEADER_SIZE = PcapFileHeader.RECORD_HEADER_SIZE;
+  private static final int PADDING = -1;
+
+  private final PcapFileHeader fileHeader;
+  private final int capacity;
+  private final long retention;
+  private final ByteBuffer ring;
+  private final long address;
+  private final ByteBuffer dumpHeader = ByteBuffer.allocateDirect(24).order(ByteOrder.nativeOrder());
+  private volatile long head;
+  private volatile long tail;
+
+  public FlightRecorder(int capacity, long retentionNanos, TstampPrecision precision, int snaplen, LinkType linkType) {
+    if (capacity < 2 * (RECORD_HEADER_SIZE + snaplen)) {
+      throw new IllegalArgumentException("capacity should fit at least two records of snaplen bytes");
+    }
+
+    this.fileHeader = new PcapFileHeader(precision, snaplen, linkType);
+    this.capacity = capacity;
+    this.retention = retentionNanos;
+    this.ring = ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+    this.address = MemoryUtil.getAddress(this.ring);
+  }
+
+  public FlightRecorder(int capacity, TstampPrecision precision, int snaplen, LinkType linkType) {
+    this(capacity, 0, precision, snaplen, linkType);
+  }
+
+  public PcapFileHeader getFileHeader() {
+    return this.fileHeader;
+  }
+
+  public long getRetainedBytes() {
+    return this.tail - this.head;
+  }
+
+  @Override
+  public void handle(PcapPacketHeaderView header, ByteBuffer buffer) {
+    this.record(header.getSeconds(), header.getMicroseconds(), header.getLength(), buffer);
+  }
+
+  /**
+   * Appends a packet; the fraction is in the precision of the recorder.
+   */
+  public void record(long seconds, long fraction, int length, ByteBuffer data) {
+    int captureLength = Math.min(data.remaining(), this.fileHeader.getSnaplen());
+    int size = RECORD_HEADER_SIZE + captureLength;
+    long position = this.tail;
+    int room = this.capacity - (int) (position % this.capacity);
+    long start = room < size ? position + room : position;
+    long end = start + size;
+
+    long head = this.head;
+    while (end - head > this.capacity) {
+      head = this.next(head);
+    }
+
+    if (this.retention > 0) {
+      long cutoff = this.toNanos(seconds, fraction) - this.retention;
+      head = this.skipPadding(head, position);
+      while (head < position && this.toNanos(this.address + (int) (head % this.capacity)) < cutoff) {
+        head = this.skipPadding(this.next(head), position);
+      }
+    }
+
+    // Publish the eviction before overwriting, so a concurrent snapshot can tell which bytes it must discard.
+    this.head = head;
+    UNSAFE.storeFence();
+
+    if (start != position && room >= RECORD_HEADER_SIZE) {
+      UNSAFE.putInt(this.address + (int) (position % this.capacity) + 8, PADDING);
+    }
+
+    long record = this.address + (int) (start % this.capacity);
+    UNSAFE.putInt(record, (int) seconds);
+    UNSAFE.putInt(record + 4, (int) fraction);
+    UNSAFE.putInt(record + 8, captureLength);
+    UNSAFE.putInt(record + 12, Math.max(length, captureLength));
+    if (data.isDirect()) {
+      UNSAFE.copyMemory(MemoryUtil.getAddress(data) + data.position(), record + RECORD_HEADER_SIZE, captureLength);
+    } else {
+      UNSAFE.copyMemory(data.array(), Unsafe.ARRAY_BYTE_BASE_OFFSET + data.arrayOffset() + data.position(), null,
+          record + RECORD_HEADER_SIZE, captureLength);
+    }
+
+    this.tail = end;
+  }
+
+  /**
+   * Copies the retained packets into a new buffer of consecutive pcap records (no file header).
+   */
+  public ByteBuffer snapshot() {
+    long tail = this.tail;
+    long head = this.head;
+    ByteBuffer copy = ByteBuffer.allocateDirect((int) (tail - head)).order(ByteOrder.nativeOrder());
+    long copyAddress = MemoryUtil.getAddress(copy);
+    for (long position = head; position < tail; ) {
+      int physical = (int) (position % this.capacity);
+      int length = (int) Math.min(tail - position, this.capacity - physical);
+      UNSAFE.copyMemory(this.address + physical, copyAddress + (position - head), length);
+      position += length;
+    }
+
+    UNSAFE.loadFence();
+    long valid = Math.max(head, this.head);
+    if (valid >= tail) {
+      copy.limit(0);
+      return copy;
+    }
+
+    // Compact records in place, dropping wrap padding and anything evicted while copying.
+    int written = 0;
+    for (long position = this.skipPadding(valid, tail, copyAddress, head); position < tail; ) {
+      int index = (int) (position - head);
+      int size = RECORD_HEADER_SIZE + UNSAFE.getInt(copyAddress + index + 8);
+      UNSAFE.copyMemory(copyAddress + index, copyAddress + written, size);
+      written += size;
+      position = this.skipPadding(position + size, tail, copyAddress, head);
+    }
+
+    copy.limit(written);
+    return copy;
+  }
+
+  /**
+   * Writes the retained packets to a new classic pcap file and returns the number of packets written.
+   */
+  public int trigger(Path path) throws IOException {
+    ByteBuffer records = this.snapshot();
+    ByteBuffer header = ByteBuffer.allocate(PcapFileHeader.SIZE);
+    this.fileHeader.write(header);
+    header.flip();
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer[] buffers = {header, records};
+      while (header.hasRemaining() || records.hasRemaining()) {
+        channel.write(buffers);
+      }
+    }
+
+    return count(records);
+  }
+
+  public int trigger(PcapWriter writer) throws IOException {
+    ByteBuffer records = this.snapshot();
+    int count = 0;
+    for (int index = 0; index < records.limit(); count++) {
+      int captureLength = records.getInt(index + 8);
+      ByteBuffer data = records.duplicate();
+      data.limit(index + RECORD_HEADER_SIZE + captureLength).position(index + RECORD_HEADER_SIZE);
+      long fraction = Integer.toUnsignedLong(records.getInt(index + 4));
+      writer.write(this.toNanos(Integer.toUnsignedLong(records.getInt(index)), fraction), records.getInt(index + 12), data);
+      index += RECORD_HEADER_SIZE + captureLength;
+    }
+
+    return count;
+  }
+
+  /**
+   * Dumps the retained packets through libpcap; the dumper should have been opened for the same link type and precision.
+   */
+  public int trigger(PcapDumper dumper) throws PcapException {
+    ByteBuffer records = this.snapshot();
+    long headerAddress = MemoryUtil.getAddress(this.dumpHeader);
+    int count = 0;
+    for (int index = 0; index < records.limit(); count++) {
+      long seconds = Integer.toUnsignedLong(records.getInt(index));
+      long fraction = Integer.toUnsignedLong(records.getInt(index + 4));
+      int captureLength = records.getInt(index + 8);
+      int length = records.getInt(index + 12);
+      this.dumpHeader.putLong(0, seconds).putLong(8, fraction).putInt(16, captureLength).putInt(20, length);
+      ByteBuffer data = records.duplicate();
+      data.limit(index + RECORD_HEADER_SIZE + captureLength).position(index + RECORD_HEADER_SIZE);
+      dumper.dump(new PcapPacketHeader(headerAddress, seconds, fraction, captureLength, length), data.slice());
+      index += RECORD_HEADER_SIZE + captureLength;
+    }
+
+    return count;
+  }
+
+  private static int count(ByteBuffer records) {
+    int count = 0;
+    for (int index = 0; index < records.limit(); count++) {
+      index += RECORD_HEADER_SIZE + records.getInt(index + 8);
+    }
+
+    return count;
+  }
+
+  private long next(long position) {
+    int physical = (int) (position % this.capacity);
+    int room = this.capacity - physical;
+    if (room < RECORD_HEADER_SIZE) {
+      return position + room;
+    }
+
+    int captureLength = UNSAFE.getInt(this.address + physical + 8);
+    return captureLength == PADDING ? position + room : position + RECORD_HEADER_SIZE + captureLength;
+  }
+
+  private long skipPadding(long position, long limit) {
+    while (position < limit) {
+      int physical = (int) (position % this.capacity);
+      int room = this.capacity - physical;
+      if (room >= RECORD_HEADER_SIZE && UNSAFE.getInt(this.address + physical + 8) != PADDING) {
+        break;
+      }
+
+      position += room;
+    }
+
+    return position;
+  }
+
+  /**
+   * Same as {@link #skipPadding(long, long)}, over a linear copy of the ring starting at logical position {@code head}.
+   */
+  private long skipPadding(long position, long limit, long copyAddress, long head) {
+    while (position < limit) {
+      int room = this.capacity - (int) (position % this.capacity);
+      if (room >= RECORD_HEADER_SIZE && UNSAFE.getInt(copyAddress + (position - head) + 8) != PADDING) {
+        break;
+      }
+
+      position += room;
+    }
+
+    return position;
+  }
+
+  private long toNanos(long seconds, long fraction) {
+    return seconds * 1_000_000_000L + (this.fileHeader.getPrecision() == TstampPrecision.NANO ? fraction : fraction * 1_000L);
+  }
+
+  private long toNanos(long record) {
+    return this.toNanos(Integer.toUnsignedLong(UNSAFE.getInt(record)), Integer.toUnsignedLong(UNSAFE.getInt(record + 4)));
+  }
+}
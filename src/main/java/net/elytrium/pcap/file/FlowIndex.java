@@ -0,0 +1,271 @@
+/*
+ * Copyright (C) 2022 - 2023 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.pcap.file;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import net.elytrium.pcap.layer.FlowKey;
+import net.elytrium.pcap.layer.data.LinkType;
+
+/**
+ * Block-level flow index of a classic pcap file, stored in a sidecar file next to the capture. Records are grouped into
+ * blocks; for every block the sidecar keeps its offset range and a Bloom filter over the addresses and ports of its
+ * packets (both directions), so a search for one address or port reads only the blocks that may contain it. The sidecar
+ * is mapped in windows and stays open until the index is closed.
+ */
+public class FlowIndex implements Closeable {
+
+  public static final String SUFFIX = ".fidx";
+  public static final int DEFAULT_BLOCK_RECORDS = 4096;
+  public static final int DEFAULT_FILTER_BITS = 1 << 17;
+  public static final int DEFAULT_HASHES = 4;
+  public static final int ANY_PORT = -1;
+
+  private static final int MAGIC = 0x50464958;
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 24;
+  private static final int BLOCK_HEADER_SIZE = 24;
+  private static final long ADDRESS_TAG = 0x9E3779B97F4A7C15L;
+  private static final long PORT_TAG = 0xD1B54A32D192ED03L;
+
+  private final FileChannel channel;
+  private final FileWindow window;
+  private final int filterBits;
+  private final int hashes;
+  private final int blockSize;
+  private final long blocks;
+
+  private FlowIndex(FileChannel channel, FileWindow window, long size, int filterBits, int hashes) {
+    this.channel = channel;
+    this.window = window;
+    this.filterBits = filterBits;
+    this.hashes = hashes;
+    this.blockSize = BLOCK_HEADER_SIZE + filterBits / Byte.SIZE;
+    this.blocks = (size - HEADER_SIZE) / this.blockSize;
+  }
+
+  public static Path sidecar(Path capture) {
+    return capture.resolveSibling(capture.getFileName() + SUFFIX);
+  }
+
+  public static FlowIndex build(Path capture) throws IOException {
+    return build(capture, DEFAULT_BLOCK_RECORDS, DEFAULT_FILTER_BITS, DEFAULT_HASHES);
+  }
+
+  /**
+   * Indexes an existing capture in one sequential pass, writes the sidecar and returns it loaded.
+   */
+  public static FlowIndex build(Path capture, int blockRecords, int filterBits, int hashes) throws IOException {
+    BloomFilter filter = new BloomFilter(filterBits, hashes);
+    ByteBuffer block = ByteBuffer.allocate(BLOCK_HEADER_SIZE + filter.getByteSize());
+    FlowKey key = new FlowKey();
+    try (MappedPcapReader reader = new MappedPcapReader(capture);
+         FileChannel channel = FileChannel.open(sidecar(capture), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+             StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      header.putInt(MAGIC).putInt(VERSION).putInt(filterBits).putInt(hashes).putLong(blockRecords).flip();
+      write(channel, header);
+
+      LinkType linkType = reader.getHeader().getLinkType();
+      long start = reader.position();
+      int records = 0;
+      while (reader.next()) {
+        if (key.decode(reader.getPacket(), linkType)) {
+          filter.add(addressKey(key.getSrcHigh(), key.getSrcLow()));
+          filter.add(addressKey(key.getDstHigh(), key.getDstLow()));
+          filter.add(portKey(key.getSrcPort()));
+          filter.add(portKey(key.getDstPort()));
+        }
+
+        if (++records == blockRecords) {
+          writeBlock(channel, block, filter, start, reader.position(), records);
+          start = reader.position();
+          records = 0;
+        }
+      }
+
+      if (records > 0) {
+        writeBlock(channel, block, filter, start, reader.position(), records);
+      }
+    }
+
+    return load(sidecar(capture));
+  }
+
+  public static FlowIndex load(Path sidecar) throws IOException {
+    FileChannel channel = FileChannel.open(sidecar, StandardOpenOption.READ);
+    try {
+      long size = channel.size();
+      FileWindow window = new FileWindow(channel, size, MappedPcapReader.DEFAULT_WINDOW_SIZE);
+      if (size < HEADER_SIZE) {
+        throw new IOException("Not a flow index: " + sidecar);
+      }
+
+      int index = window.map(0, HEADER_SIZE);
+      ByteBuffer header = window.buffer();
+      if (header.getInt(index) != MAGIC || header.getInt(index + 4) != VERSION) {
+        throw new IOException("Not a flow index: " + sidecar);
+      }
+
+      return new FlowIndex(channel, window, size, header.getInt(index + 8), header.getInt(index + 12));
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  public long getBlocks() {
+    return this.blocks;
+  }
+
+  /**
+   * Returns [start, end) offset pairs of the blocks that may contain the address (null for any) and the port
+   * ({@link #ANY_PORT} for any), in file order.
+   */
+  public List<long[]> findBlocks(InetAddress address, int port) throws IOException {
+    long addressKey = address == null ? 0 : addressKey(address);
+    long portKey = portKey(port);
+    List<long[]> result = new ArrayList<>();
+    for (long i = 0; i < this.blocks; i++) {
+      int index = this.window.map(HEADER_SIZE + i * this.blockSize, this.blockSize);
+      ByteBuffer buffer = this.window.buffer();
+      int filter = index + BLOCK_HEADER_SIZE;
+      if (address != null && !BloomFilter.mightContain(buffer, filter, this.filterBits, this.hashes, addressKey)) {
+        continue;
+      }
+
+      if (port != ANY_PORT && !BloomFilter.mightContain(buffer, filter, this.filterBits, this.hashes, portKey)) {
+        continue;
+      }
+
+      result.add(new long[] {buffer.getLong(index), buffer.getLong(index + 8)});
+    }
+
+    return result;
+  }
+
+  /**
+   * Calls the handler for every packet of the capture whose flow involves the address and port, reading only the
+   * blocks whose filters match. The reader is positioned at the matching record when the handler is called.
+   */
+  public void search(Path capture, InetAddress address, int port, MatchHandler handler) throws IOException {
+    long addressHigh = 0;
+    long addressLow = 0;
+    if (address != null) {
+      long[] parts = toLongs(address);
+      addressHigh = parts[0];
+      addressLow = parts[1];
+    }
+
+    FlowKey key = new FlowKey();
+    try (MappedPcapReader reader = new MappedPcapReader(capture)) {
+      LinkType linkType = reader.getHeader().getLinkType();
+      for (long[] block : this.findBlocks(address, port)) {
+        reader.setEnd(block[1]);
+        reader.position(block[0]);
+        while (reader.next()) {
+          if (!key.decode(reader.getPacket(), linkType)) {
+            continue;
+          }
+
+          boolean addressMatches = address == null
+              || (key.getSrcHigh() == addressHigh && key.getSrcLow() == addressLow)
+              || (key.getDstHigh() == addressHigh && key.getDstLow() == addressLow);
+          boolean portMatches = port == ANY_PORT || key.getSrcPort() == port || key.getDstPort() == port;
+          if (addressMatches && portMatches) {
+            handler.handle(capture, reader, key);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Searches every capture in the directory that has a flow index sidecar, in file name order.
+   */
+  public static void searchDirectory(Path directory, InetAddress address, int port, MatchHandler handler) throws IOException {
+    List<Path> captures;
+    try (Stream<Path> files = Files.list(directory)) {
+      captures = files.filter(file -> Files.exists(sidecar(file))).sorted().collect(Collectors.toList());
+    }
+
+    for (Path capture : captures) {
+      try (FlowIndex index = load(sidecar(capture))) {
+        index.search(capture, address, port, handler);
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.channel.close();
+  }
+
+  private static void writeBlock(FileChannel channel, ByteBuffer block, BloomFilter filter, long start, long end, int records)
+      throws IOException {
+    block.clear();
+    block.putLong(start).putLong(end).putInt(records).putInt(0);
+    filter.write(block);
+    block.flip();
+    write(channel, block);
+    filter.clear();
+  }
+
+  private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  private static long addressKey(InetAddress address) {
+    long[] parts = toLongs(address);
+    return addressKey(parts[0], parts[1]);
+  }
+
+  private static long addressKey(long high, long low) {
+    return BloomFilter.mix(high * 31 + low) ^ ADDRESS_TAG;
+  }
+
+  private static long portKey(int port) {
+    return port ^ PORT_TAG;
+  }
+
+  private static long[] toLongs(InetAddress address) {
+    ByteBuffer bytes = ByteBuffer.wrap(address.getAddress());
+    if (bytes.remaining() == 4) {
+      return new long[] {0, Integer.toUnsignedLong(bytes.getInt())};
+    }
+
+    return new long[] {bytes.getLong(), bytes.getLong()};
+  }
+
+  public interface MatchHandler {
+
+    void handle(Path capture, MappedPcapReader reader, FlowKey key) throws IOException;
+  }
+}
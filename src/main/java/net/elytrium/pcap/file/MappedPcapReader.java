@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) 2022 - 2023 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.pcap.file;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import net.elytrium.pcap.data.PcapPacketHeader;
+import net.elytrium.pcap.data.PcapRawPacket;
+
+/**
+ * Reads classic pcap savefiles without libpcap through a sliding read-only mapping.
+ * After {@link #next()} the record fields are read from the mapping and {@link #getPacket()} is a slice of it.
+ */
+public class MappedPcapReader implements Closeable {
+
+  public static final int DEFAULT_WINDOW_SIZE = 64 << 20;
+
+  private static final int RESYNC_RECORDS = 8;
+  private static final int RESYNC_LIMIT = 16 << 20;
+  private static final long MAX_TIMESTAMP_GAP = 86400;
+
+  private final FileChannel channel;
+  private final boolean ownsChannel;
+  private final PcapFileHeader header;
+  private final long fileSize;
+  private final int windowSize;
+  private final int maxLength;
+  private final FileWindow window;
+  private long position;
+  private long end;
+  private long recordOffset = -1;
+  private int recordIndex;
+
+  public MappedPcapReader(Path path) throws IOException {
+    this(FileChannel.open(path, StandardOpenOption.READ), true, DEFAULT_WINDOW_SIZE);
+  }
+
+  public MappedPcapReader(FileChannel channel) throws IOException {
+    this(channel, false, DEFAULT_WINDOW_SIZE);
+  }
+
+  private MappedPcapReader(FileChannel channel, boolean ownsChannel, int windowSize) throws IOException {
+    this.channel = channel;
+    this.ownsChannel = ownsChannel;
+    this.windowSize = windowSize;
+    try {
+      this.header = readHeader(channel);
+      this.fileSize = channel.size();
+    } catch (IOException | RuntimeException e) {
+      if (ownsChannel) {
+        channel.close();
+      }
+
+      throw e;
+    }
+
+    this.maxLength = Math.max(this.header.getSnaplen(), PcapFileHeader.DEFAULT_SNAPLEN);
+    this.window = new FileWindow(channel, this.fileSize, windowSize);
+    this.window.order(this.header.getByteOrder());
+    this.position = PcapFileHeader.SIZE;
+    this.end = this.fileSize;
+  }
+
+  MappedPcapReader(MappedPcapReader parent, long position, long end) {
+    this.channel = parent.channel;
+    this.ownsChannel = false;
+    this.header = parent.header;
+    this.fileSize = parent.fileSize;
+    this.windowSize = parent.windowSize;
+    this.maxLength = parent.maxLength;
+    this.window = new FileWindow(this.channel, this.fileSize, this.windowSize);
+    this.window.order(this.header.getByteOrder());
+    this.position = position;
+    this.end = end;
+  }
+
+  public PcapFileHeader getHeader() {
+    return this.header;
+  }
+
+  public long getFileSize() {
+    return this.fileSize;
+  }
+
+  public long position() {
+    return this.position;
+  }
+
+  public void position(long position) {
+    if (position < PcapFileHeader.SIZE || position > this.fileSize) {
+      throw new IllegalArgumentException("position " + position + " is outside of the file");
+    }
+
+    this.position = position;
+    this.recordOffset = -1;
+  }
+
+  public long getEnd() {
+    return this.end;
+  }
+
+  public void setEnd(long end) {
+    this.end = Math.min(end, this.fileSize);
+  }
+
+  public boolean next() throws IOException {
+    if (this.position >= this.end) {
+      this.recordOffset = -1;
+      return false;
+    }
+
+    int offset = this.window.map(this.position, PcapFileHeader.RECORD_HEADER_SIZE);
+    int captureLength = this.window.buffer().getInt(offset + 8);
+    if (captureLength < 0 || captureLength > this.maxLength) {
+      throw new IOException("Invalid record capture length " + captureLength + " at offset " + this.position);
+    }
+
+    this.recordIndex = this.window.map(this.position, PcapFileHeader.RECORD_HEADER_SIZE + captureLength);
+    this.recordOffset = this.position;
+    this.position += PcapFileHeader.RECORD_HEADER_SIZE + captureLength;
+    return true;
+  }
+
+  public PcapRawPacket nextPacket() throws IOException {
+    if (!this.next()) {
+      return null;
+    }
+
+    return new PcapRawPacket(this.getPacketHeader(), this.getPacket().slice());
+  }
+
+  public long getRecordOffset() {
+    return this.recordOffset;
+  }
+
+  public long getSeconds() {
+    return this.window.buffer().getInt(this.recordIndex) & 0xFFFFFFFFL;
+  }
+
+  public long getFraction() {
+    return this.window.buffer().getInt(this.recordIndex + 4) & 0xFFFFFFFFL;
+  }
+
+  public long getEpochNanos() {
+    long fraction = this.getFraction();
+    return this.getSeconds() * 1_000_000_000L + (this.header.getFractionLimit() == 1_000_000 ? fraction * 1_000L : fraction);
+  }
+
+  public int getCaptureLength() {
+    return this.window.buffer().getInt(this.recordIndex + 8);
+  }
+
+  public int getLength() {
+    return this.window.buffer().getInt(this.recordIndex + 12);
+  }
+
+  public PcapPacketHeader getPacketHeader() {
+    return new PcapPacketHeader(0, this.getSeconds(), this.getFraction(), this.getCaptureLength(), this.getLength());
+  }
+
+  /**
+   * Returns a buffer shared between calls, positioned over the current record data until the next call of {@link #next()}.
+   */
+  public ByteBuffer getPacket() {
+    return this.window.slice(this.recordIndex + PcapFileHeader.RECORD_HEADER_SIZE, this.getCaptureLength());
+  }
+
+  /**
+   * Finds the first offset in [from, limit) that starts a chain of plausible record headers, or -1.
+   * The current record is no longer valid after this call.
+   */
+  public long findRecordBoundary(long from, long limit) throws IOException {
+    long last = Math.min(Math.min(limit, this.fileSize), from + RESYNC_LIMIT);
+    for (long candidate = Math.max(from, PcapFileHeader.SIZE); candidate < last; candidate++) {
+      if (this.isRecordChain(candidate)) {
+        return candidate;
+      }
+    }
+
+    return -1;
+  }
+
+  private boolean isRecordChain(long candidate) throws IOException {
+    long position = candidate;
+    long previousSeconds = -1;
+    for (int i = 0; i < RESYNC_RECORDS; i++) {
+      if (position == this.fileSize) {
+        return i > 0;
+      }
+
+      if (position + PcapFileHeader.RECORD_HEADER_SIZE > this.fileSize) {
+        return false;
+      }
+
+      int offset = this.window.map(position, PcapFileHeader.RECORD_HEADER_SIZE);
+      ByteBuffer buffer = this.window.buffer();
+      long seconds = buffer.getInt(offset) & 0xFFFFFFFFL;
+      long fraction = buffer.getInt(offset + 4) & 0xFFFFFFFFL;
+      int captureLength = buffer.getInt(offset + 8);
+      int length = buffer.getInt(offset + 12);
+      if (fraction >= this.header.getFractionLimit()
+          || captureLength < 0 || captureLength > this.maxLength
+          || length < captureLength || length > this.maxLength << 2) {
+        return false;
+      }
+
+      if (previousSeconds >= 0 && Math.abs(seconds - previousSeconds) > MAX_TIMESTAMP_GAP) {
+        return false;
+      }
+
+      previousSeconds = seconds;
+      position += PcapFileHeader.RECORD_HEADER_SIZE + captureLength;
+      if (position > this.fileSize) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (this.ownsChannel) {
+      this.channel.close();
+    }
+  }
+
+  static PcapFileHeader readHeader(FileChannel channel) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(PcapFileHeader.SIZE);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, buffer.position()) < 0) {
+        break;
+      }
+    }
+
+    buffer.flip();
+    return PcapFileHeader.read(buffer);
+  }
+}
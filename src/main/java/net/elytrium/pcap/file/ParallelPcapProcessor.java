@@ -0,0 +1,328 @@
+/*
+ * Copyright (C) 2022 - 2023 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.pcap.file;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+import net.elytrium.pcap.layer.LayerRegistry;
+import net.elytrium.pcap.layer.Packet;
+import net.elytrium.pcap.layer.data.LinkType;
+import net.elytrium.pcap.layer.exception.LayerDecodeException;
+
+/**
+ * Decodes one classic pcap file on a {@link ForkJoinPool}. The file is cut into chunks at validated record boundaries,
+ * every chunk is decoded into {@link Packet}s by its own task, and chunk results are merged back in timestamp order.
+ * Packets that fail to decode are skipped and counted.
+ */
+public class ParallelPcapProcessor {
+
+  public static final long DEFAULT_CHUNK_SIZE = 64 << 20;
+
+  private final Path path;
+  private final ForkJoinPool pool;
+  private final long chunkSize;
+  private final LinkType linkType;
+  private final AtomicLong decodeErrors = new AtomicLong();
+
+  public ParallelPcapProcessor(Path path, ForkJoinPool pool, long chunkSize, LinkType linkType) {
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("chunkSize should be positive");
+    }
+
+    this.path = path;
+    this.pool = pool;
+    this.chunkSize = chunkSize;
+    this.linkType = linkType;
+  }
+
+  public ParallelPcapProcessor(Path path, ForkJoinPool pool) {
+    this(path, pool, DEFAULT_CHUNK_SIZE, null);
+  }
+
+  public ParallelPcapProcessor(Path path) {
+    this(path, ForkJoinPool.commonPool());
+  }
+
+  public long getDecodeErrors() {
+    return this.decodeErrors.get();
+  }
+
+  /**
+   * Returns the chunk start offsets followed by the file size, so chunk i spans [result[i], result[i + 1]).
+   */
+  public long[] findChunkBoundaries() throws IOException {
+    try (MappedPcapReader reader = new MappedPcapReader(this.path)) {
+      return this.findChunkBoundaries(reader);
+    }
+  }
+
+  /**
+   * Applies the function to every packet and returns the non-null results ordered by packet timestamp.
+   * Packets with equal timestamps keep their file order.
+   */
+  public <R> List<R> process(PacketFunction<R> function) throws IOException {
+    try (MappedPcapReader reader = new MappedPcapReader(this.path)) {
+      long[] boundaries = this.findChunkBoundaries(reader);
+      LinkType linkType = this.getLinkType(reader);
+      TimedResults<R> results = this.invoke(reader, boundaries, new ChunkWork<TimedResults<R>>() {
+        @Override
+        public TimedResults<R> process(MappedPcapReader chunk) throws IOException {
+          TimedResults<R> results = new TimedResults<>();
+          while (chunk.next()) {
+            // Results may keep the packet, so it can't be reused for the next record.
+            Packet packet = new Packet();
+            if (ParallelPcapProcessor.this.decode(chunk, linkType, packet)) {
+              long timestamp = chunk.getEpochNanos();
+              R result = function.apply(timestamp, packet);
+              if (result != null) {
+                results.add(timestamp, result);
+              }
+            }
+          }
+
+          results.sort();
+          return results;
+        }
+
+        @Override
+        public TimedResults<R> combine(TimedResults<R> left, TimedResults<R> right) {
+          return TimedResults.merge(left, right);
+        }
+      });
+
+      return results.values;
+    }
+  }
+
+  /**
+   * Folds every packet into per-chunk accumulators created by the identity supplier and combines them in file order.
+   */
+  public <A> A reduce(Supplier<A> identity, PacketAccumulator<A> accumulator, BinaryOperator<A> combiner) throws IOException {
+    try (MappedPcapReader reader = new MappedPcapReader(this.path)) {
+      long[] boundaries = this.findChunkBoundaries(reader);
+      LinkType linkType = this.getLinkType(reader);
+      return this.invoke(reader, boundaries, new ChunkWork<A>() {
+        @Override
+        public A process(MappedPcapReader chunk) throws IOException {
+          A result = identity.get();
+          Packet packet = new Packet();
+          while (chunk.next()) {
+            if (ParallelPcapProcessor.this.decode(chunk, linkType, packet)) {
+              accumulator.accept(result, chunk.getEpochNanos(), packet);
+            }
+          }
+
+          return result;
+        }
+
+        @Override
+        public A combine(A left, A right) {
+          return combiner.apply(left, right);
+        }
+      });
+    }
+  }
+
+  private long[] findChunkBoundaries(MappedPcapReader reader) throws IOException {
+    long fileSize = reader.getFileSize();
+    long[] boundaries = new long[(int) Math.min(Integer.MAX_VALUE - 1, fileSize / this.chunkSize + 2)];
+    int count = 0;
+    boundaries[count++] = PcapFileHeader.SIZE;
+    for (long offset = PcapFileHeader.SIZE + this.chunkSize; offset < fileSize; offset += this.chunkSize) {
+      long boundary = reader.findRecordBoundary(offset, fileSize);
+      if (boundary < 0) {
+        break;
+      }
+
+      if (boundary > boundaries[count - 1]) {
+        boundaries[count++] = boundary;
+      }
+    }
+
+    boundaries[count++] = fileSize;
+    return Arrays.copyOf(boundaries, count);
+  }
+
+  private LinkType getLinkType(MappedPcapReader reader) throws IOException {
+    LinkType linkType = this.linkType == null ? reader.getHeader().getLinkType() : this.linkType;
+    if (linkType == null || LayerRegistry.getLinkTypeLayer(linkType.getValue()) == null) {
+      throw new IOException("Unsupported link type " + reader.getHeader().getRawLinkType());
+    }
+
+    return linkType;
+  }
+
+  private boolean decode(MappedPcapReader chunk, LinkType linkType, Packet packet) {
+    try {
+      packet.decode(chunk.getPacket(), linkType);
+      return true;
+    } catch (LayerDecodeException | RuntimeException e) {
+      this.decodeErrors.incrementAndGet();
+      return false;
+    }
+  }
+
+  private <T> T invoke(MappedPcapReader reader, long[] boundaries, ChunkWork<T> work) throws IOException {
+    try {
+      return this.pool.invoke(new ChunkTask<>(reader, boundaries, 0, boundaries.length - 1, work));
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  public interface PacketFunction<R> {
+
+    R apply(long epochNanos, Packet packet);
+  }
+
+  /**
+   * The packet is reused for the next record of the chunk, so it and its layers and data are only valid during the call.
+   */
+  public interface PacketAccumulator<A> {
+
+    void accept(A accumulator, long epochNanos, Packet packet);
+  }
+
+  private interface ChunkWork<T> {
+
+    T process(MappedPcapReader chunk) throws IOException;
+
+    T combine(T left, T right);
+  }
+
+  private static class ChunkTask<T> extends RecursiveTask<T> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient MappedPcapReader reader;
+    private final long[] boundaries;
+    private final int from;
+    private final int to;
+    private final transient ChunkWork<T> work;
+
+    private ChunkTask(MappedPcapReader reader, long[] boundaries, int from, int to, ChunkWork<T> work) {
+      this.reader = reader;
+      this.boundaries = boundaries;
+      this.from = from;
+      this.to = to;
+      this.work = work;
+    }
+
+    @Override
+    protected T compute() {
+      if (this.to - this.from == 1) {
+        try {
+          return this.work.process(new MappedPcapReader(this.reader, this.boundaries[this.from], this.boundaries[this.to]));
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+
+      int middle = (this.from + this.to) >>> 1;
+      ChunkTask<T> left = new ChunkTask<>(this.reader, this.boundaries, this.from, middle, this.work);
+      ChunkTask<T> right = new ChunkTask<>(this.reader, this.boundaries, middle, this.to, this.work);
+      left.fork();
+      T rightResult = right.compute();
+      return this.work.combine(left.join(), rightResult);
+    }
+  }
+
+  private static class TimedResults<R> {
+
+    private long[] timestamps = new long[16];
+    private List<R> values = new ArrayList<>();
+
+    private void add(long timestamp, R value) {
+      int size = this.values.size();
+      if (size == this.timestamps.length) {
+        this.timestamps = Arrays.copyOf(this.timestamps, size * 2);
+      }
+
+      this.timestamps[size] = timestamp;
+      this.values.add(value);
+    }
+
+    private void sort() {
+      int size = this.values.size();
+      for (int i = 1; i < size; i++) {
+        if (this.timestamps[i] < this.timestamps[i - 1]) {
+          this.stableSort();
+          return;
+        }
+      }
+    }
+
+    private void stableSort() {
+      int size = this.values.size();
+      Integer[] order = new Integer[size];
+      for (int i = 0; i < size; i++) {
+        order[i] = i;
+      }
+
+      long[] timestamps = this.timestamps;
+      Arrays.sort(order, (a, b) -> Long.compare(timestamps[a], timestamps[b]));
+      long[] sortedTimestamps = new long[Math.max(16, size)];
+      List<R> sortedValues = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        sortedTimestamps[i] = timestamps[order[i]];
+        sortedValues.add(this.values.get(order[i]));
+      }
+
+      this.timestamps = sortedTimestamps;
+      this.values = sortedValues;
+    }
+
+    private static <R> TimedResults<R> merge(TimedResults<R> left, TimedResults<R> right) {
+      int leftSize = left.values.size();
+      int rightSize = right.values.size();
+      if (rightSize == 0) {
+        return left;
+      }
+
+      if (leftSize == 0) {
+        return right;
+      }
+
+      TimedResults<R> merged = new TimedResults<>();
+      merged.timestamps = new long[leftSize + rightSize];
+      merged.values = new ArrayList<>(leftSize + rightSize);
+      int i = 0;
+      int j = 0;
+      while (i < leftSize || j < rightSize) {
+        if (j == rightSize || (i < leftSize && left.timestamps[i] <= right.timestamps[j])) {
+          merged.timestamps[i + j] = left.timestamps[i];
+          merged.values.add(left.values.get(i++));
+        } else {
+          merged.timestamps[i + j] = right.timestamps[j];
+          merged.values.add(right.values.get(j++));
+        }
+      }
+
+      return merged;
+    }
+  }
+}
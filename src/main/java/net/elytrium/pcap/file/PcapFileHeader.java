@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2022 - 2023 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.pcap.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Objects;
+import net.elytrium.pcap.data.TstampPrecision;
+import net.elytrium.pcap.layer.data.LinkType;
+
+public class PcapFileHeader {
+
+  public static final int SIZE = 24;
+  public static final int RECORD_HEADER_SIZE = 16;
+  public static final int MAGIC_MICRO = 0xA1B2C3D4;
+  public static final int MAGIC_NANO = 0xA1B23C4D;
+  public static final int DEFAULT_SNAPLEN = 262144;
+
+  private static final int LINK_TYPE_MASK = 0x03FFFFFF;
+
+  private final ByteOrder byteOrder;
+  private final TstampPrecision precision;
+  private final int versionMajor;
+  private final int versionMinor;
+  private final int thisZone;
+  private final int sigFigs;
+  private final int snaplen;
+  private final int linkType;
+
+  public PcapFileHeader(ByteOrder byteOrder, TstampPrecision precision, int versionMajor, int versionMinor,
+                        int thisZone, int sigFigs, int snaplen, int linkType) {
+    this.byteOrder = Objects.requireNonNull(byteOrder, "byteOrder");
+    this.precision = Objects.requireNonNull(precision, "precision");
+    this.versionMajor = versionMajor;
+    this.versionMinor = versionMinor;
+    this.thisZone = thisZone;
+    this.sigFigs = sigFigs;
+    this.snaplen = snaplen;
+    this.linkType = linkType;
+  }
+
+  public PcapFileHeader(TstampPrecision precision, int snaplen, LinkType linkType) {
+    this(ByteOrder.nativeOrder(), precision, 2, 4, 0, 0, snaplen, linkType.getValue());
+  }
+
+  public ByteOrder getByteOrder() {
+    return this.byteOrder;
+  }
+
+  public TstampPrecision getPrecision() {
+    return this.precision;
+  }
+
+  public int getVersionMajor() {
+    return this.versionMajor;
+  }
+
+  public int getVersionMinor() {
+    return this.versionMinor;
+  }
+
+  public int getThisZone() {
+    return this.thisZone;
+  }
+
+  public int getSigFigs() {
+    return this.sigFigs;
+  }
+
+  public int getSnaplen() {
+    return this.snaplen;
+  }
+
+  public int getRawLinkType() {
+    return this.linkType;
+  }
+
+  public LinkType getLinkType() {
+    return LinkType.getByValue(this.linkType & LINK_TYPE_MASK);
+  }
+
+  public int getFractionLimit() {
+    return this.precision == TstampPrecision.NANO ? 1_000_000_000 : 1_000_000;
+  }
+
+  public void write(ByteBuffer buffer) {
+    ByteOrder order = buffer.order();
+    buffer.order(this.byteOrder);
+    buffer.putInt(this.precision == TstampPrecision.NANO ? MAGIC_NANO : MAGIC_MICRO);
+    buffer.putShort((short) this.versionMajor);
+    buffer.putShort((short) this.versionMinor);
+    buffer.putInt(this.thisZone);
+    buffer.putInt(this.sigFigs);
+    buffer.putInt(this.snaplen);
+    buffer.putInt(this.linkType);
+    buffer.order(order);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+
+    if (o == null || this.getClass() != o.getClass()) {
+      return false;
+    }
+
+    PcapFileHeader that = (PcapFileHeader) o;
+
+    return this.byteOrder == that.byteOrder
+        && this.precision == that.precision
+        && this.versionMajor == that.versionMajor
+        && this.versionMinor == that.versionMinor
+        && this.thisZone == that.thisZone
+        && this.sigFigs == that.sigFigs
+        && this.snaplen == that.snaplen
+        && this.linkType == that.linkType;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = this.byteOrder.hashCode();
+    result = 31 * result + this.precision.hashCode();
+    result = 31 * result + this.versionMajor;
+    result = 31 * result + this.versionMinor;
+    result = 31 * result + this.thisZone;
+    result = 31 * result + this.sigFigs;
+    result = 31 * result + this.snaplen;
+    result = 31 * result + this.linkType;
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return "PcapFileHeader{"
+        + "byteOrder=" + this.byteOrder
+        + ", precision=" + this.precision
+        + ", versionMajor=" + this.versionMajor
+        + ", versionMinor=" + this.versionMinor
+        + ", thisZone=" + this.thisZone
+        + ", sigFigs=" + this.sigFigs
+        + ", snaplen=" + this.snaplen
+        + ", linkType=" + this.linkType
+        + '}';
+  }
+
+  public static PcapFileHeader read(ByteBuffer buffer) throws IOException {
+    if (buffer.remaining() < SIZE) {
+      throw new IOException("Truncated pcap file header");
+    }
+
+    ByteOrder order = buffer.order();
+    try {
+      buffer.order(ByteOrder.BIG_ENDIAN);
+      int magic = buffer.getInt();
+      ByteOrder byteOrder = ByteOrder.BIG_ENDIAN;
+      if (magic != MAGIC_MICRO && magic != MAGIC_NANO) {
+        magic = Integer.reverseBytes(magic);
+        byteOrder = ByteOrder.LITTLE_ENDIAN;
+      }
+
+      TstampPrecision precision;
+      if (magic == MAGIC_MICRO) {
+        precision = TstampPrecision.MICRO;
+      } else if (magic == MAGIC_NANO) {
+        precision = TstampPrecision.NANO;
+      } else {
+        throw new IOException("Unknown pcap magic number 0x" + Integer.toHexString(Integer.reverseBytes(magic)));
+      }
+
+      buffer.order(byteOrder);
+      return new PcapFileHeader(
+          byteOrder,
+          precision,
+          buffer.getShort() & 0xFFFF,
+          buffer.getShort() & 0xFFFF,
+          buffer.getInt(),
+          buffer.getInt(),
+          buffer.getInt(),
+          buffer.getInt()
+      );
+    } finally {
+      buffer.order(order);
+    }
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2022 - 2023 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.pcap.file;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import net.elytrium.pcap.data.PcapRawPacket;
+
+class PcapFileSpliterator implements Spliterator<PcapRawPacket> {
+
+  static final int MIN_SPLIT_SIZE = 16 << 20;
+
+  private final MappedPcapReader reader;
+
+  PcapFileSpliterator(MappedPcapReader reader) {
+    this.reader = reader;
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super PcapRawPacket> action) {
+    try {
+      PcapRawPacket packet = this.reader.nextPacket();
+      if (packet == null) {
+        return false;
+      }
+
+      action.accept(packet);
+      return true;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public Spliterator<PcapRawPacket> trySplit() {
+    long position = this.reader.position();
+    long remaining = this.reader.getEnd() - position;
+    if (remaining < MIN_SPLIT_SIZE) {
+      return null;
+    }
+
+    try {
+      long boundary = this.reader.findRecordBoundary(position + remaining / 2, this.reader.getEnd());
+      if (boundary < 0) {
+        return null;
+      }
+
+      PcapFileSpliterator prefix = new PcapFileSpliterator(new MappedPcapReader(this.reader, position, boundary));
+      this.reader.position(boundary);
+      return prefix;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public long estimateSize() {
+    return (this.reader.getEnd() - this.reader.position()) / PcapFileHeader.RECORD_HEADER_SIZE;
+  }
+
+  @Override
+  public int characteristics() {
+    return ORDERED | NONNULL | IMMUTABLE;
+  }
+}
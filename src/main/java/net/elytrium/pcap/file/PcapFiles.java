@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2022 - 2023 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.pcap.file;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import net.elytrium.pcap.data.PcapRawPacket;
+
+public class PcapFiles {
+
+  public static PcapFileHeader readHeader(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      return MappedPcapReader.readHeader(channel);
+    }
+  }
+
+  /**
+   * Streams the records of a classic pcap file. Packet buffers are read-only slices of the file mapping.
+   * The stream is splittable at record boundaries, so {@code .parallel()} spreads one file over all cores.
+   * Close the stream to release the file.
+   */
+  public static Stream<PcapRawPacket> stream(Path path) throws IOException {
+    MappedPcapReader reader = new MappedPcapReader(path);
+    return StreamSupport.stream(new PcapFileSpliterator(reader), false).onClose(() -> {
+      try {
+        reader.close();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    });
+  }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2022 - 2023 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.pcap.file;
+
+class PcapNgFormat {
+
+  static final int SECTION_HEADER_BLOCK = 0x0A0D0D0A;
+  static final int INTERFACE_DESCRIPTION_BLOCK = 0x00000001;
+  static final int SIMPLE_PACKET_BLOCK = 0x00000003;
+  static final int ENHANCED_PACKET_BLOCK = 0x00000006;
+  static final int BYTE_ORDER_MAGIC = 0x1A2B3C4D;
+
+  static final int BLOCK_HEADER_SIZE = 8;
+  static final int BLOCK_TRAILER_SIZE = 4;
+  static final int SECTION_HEADER_BODY_SIZE = 16;
+  static final int INTERFACE_DESCRIPTION_BODY_SIZE = 8;
+  static final int SIMPLE_PACKET_BODY_SIZE = 4;
+  static final int ENHANCED_PACKET_BODY_SIZE = 20;
+
+  static final short OPT_END_OF_OPT = 0;
+  static final short OPT_COMMENT = 1;
+  static final short IF_NAME = 2;
+  static final short IF_DESCRIPTION = 3;
+  static final short IF_TSRESOL = 9;
+  static final short IF_TSOFFSET = 14;
+
+  static int pad(int length) {
+    return (length + 3) & ~3;
+  }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2022 - 2023 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.pcap.file;
+
+import java.math.BigInteger;
+import java.util.Objects;
+import net.elytrium.pcap.layer.data.LinkType;
+
+public class PcapNgInterface {
+
+  public static final byte RESOLUTION_MICRO = 6;
+  public static final byte RESOLUTION_NANO = 9;
+
+  private static final int MAX_DECIMAL_EXPONENT = 18;
+  private static final int MAX_BINARY_EXPONENT = 62;
+  private static final int EXACT_BINARY_EXPONENT = 33;
+  private static final BigInteger NANOS_PER_SECOND = BigInteger.valueOf(1_000_000_000L);
+  private static final long[] POWERS_OF_TEN = {
+      1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L
+  };
+
+  private final int linkType;
+  private final int snaplen;
+  private final byte timestampResolution;
+  private final long timestampOffset;
+  private final String name;
+  private final String description;
+
+  public PcapNgInterface(int linkType, int snaplen, byte timestampResolution, long timestampOffset, String name, String description) {
+    if (!isSupportedResolution(timestampResolution)) {
+      throw new IllegalArgumentException("Unsupported if_tsresol " + Byte.toUnsignedInt(timestampResolution));
+    }
+
+    this.linkType = linkType;
+    this.snaplen = snaplen;
+    this.timestampResolution = timestampResolution;
+    this.timestampOffset = timestampOffset;
+    this.name = name;
+    this.description = description;
+  }
+
+  public PcapNgInterface(LinkType linkType, int snaplen, byte timestampResolution, String name) {
+    this(linkType.getValue(), snaplen, timestampResolution, 0, name, null);
+  }
+
+  public PcapNgInterface(LinkType linkType, int snaplen) {
+    this(linkType.getValue(), snaplen, RESOLUTION_MICRO, 0, null, null);
+  }
+
+  public int getRawLinkType() {
+    return this.linkType;
+  }
+
+  public LinkType getLinkType() {
+    return LinkType.getByValue(this.linkType);
+  }
+
+  public int getSnaplen() {
+    return this.snaplen;
+  }
+
+  public byte getTimestampResolution() {
+    return this.timestampResolution;
+  }
+
+  public long getTimestampOffset() {
+    return this.timestampOffset;
+  }
+
+  public String getName() {
+    return this.name;
+  }
+
+  public String getDescription() {
+    return this.description;
+  }
+
+  public long toEpochNanos(long timestamp) {
+    long nanos;
+    int exponent = this.timestampResolution & 0x7F;
+    if ((this.timestampResolution & 0x80) == 0) {
+      if (exponent <= 9) {
+        nanos = timestamp * POWERS_OF_TEN[9 - exponent];
+      } else {
+        nanos = Long.divideUnsigned(timestamp, pow10(exponent - 9));
+      }
+    } else {
+      long seconds = timestamp >>> exponent;
+      long fraction = timestamp & ((1L << exponent) - 1);
+      if (exponent <= EXACT_BINARY_EXPONENT) {
+        nanos = seconds * 1_000_000_000L + (fraction * 1_000_000_000L >>> exponent);
+      } else {
+        nanos = seconds * 1_000_000_000L + BigInteger.valueOf(fraction).multiply(NANOS_PER_SECOND).shiftRight(exponent).longValue();
+      }
+    }
+
+    return nanos + this.timestampOffset * 1_000_000_000L;
+  }
+
+  public long fromEpochNanos(long epochNanos) {
+    long nanos = epochNanos - this.timestampOffset * 1_000_000_000L;
+    int exponent = this.timestampResolution & 0x7F;
+    if ((this.timestampResolution & 0x80) == 0) {
+      if (exponent <= 9) {
+        return nanos / POWERS_OF_TEN[9 - exponent];
+      } else {
+        return nanos * pow10(exponent - 9);
+      }
+    } else {
+      long seconds = Math.floorDiv(nanos, 1_000_000_000L);
+      long fraction = Math.floorMod(nanos, 1_000_000_000L);
+      if (exponent <= EXACT_BINARY_EXPONENT) {
+        return (seconds << exponent) + (fraction << exponent) / 1_000_000_000L;
+      } else {
+        return (seconds << exponent) + BigInteger.valueOf(fraction).shiftLeft(exponent).divide(NANOS_PER_SECOND).longValue();
+      }
+    }
+  }
+
+  /**
+   * Returns whether the if_tsresol value describes a unit that fits in the 64-bit timestamp, that is at most 10^18 or
+   * 2^62 units per second.
+   */
+  public static boolean isSupportedResolution(byte timestampResolution) {
+    int exponent = timestampResolution & 0x7F;
+    return exponent <= ((timestampResolution & 0x80) == 0 ? MAX_DECIMAL_EXPONENT : MAX_BINARY_EXPONENT);
+  }
+
+  private static long pow10(int exponent) {
+    long result = 1;
+    for (int i = 0; i < exponent; i++) {
+      result *= 10;
+    }
+
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+
+    if (o == null || this.getClass() != o.getClass()) {
+      return false;
+    }
+
+    PcapNgInterface that = (PcapNgInterface) o;
+
+    return this.linkType == that.linkType
+        && this.snaplen == that.snaplen
+        && this.timestampResolution == that.timestampResolution
+        && this.timestampOffset == that.timestampOffset
+        && Objects.equals(this.name, that.name)
+        && Objects.equals(this.description, that.description);
+  }
+
+  @Override
+  public int hashCode() {
+    int result = this.linkType;
+    result = 31 * result + this.snaplen;
+    result = 31 * result + this.timestampResolution;
+    result = 31 * result + (int) (this.timestampOffset ^ (this.timestampOffset >>> 32));
+    result = 31 * result + (this.name != null ? this.name.hashCode() : 0);
+    result = 31 * result + (this.description != null ? this.description.hashCode() : 0);
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return "PcapNgInterface{"
+        + "linkType=" + this.linkType
+        + ", snaplen=" + this.snaplen
+        + ", timestampResolution=" + this.timestampResolution
+        + ", timestampOffset=" + this.timestampOffset
+        + ", name=" + this.name
+        + ", description=" + this.description
+        + '}';
+  }
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright (C) 2022 - 2023 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.pcap.file;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Streams the packet blocks (EPB and SPB) of a pcapng file through a sliding read-only mapping.
+ * Interface descriptions are collected per section as they are met, so every packet resolves its own link type and timestamp resolution.
+ */
+public class PcapNgReader implements Closeable {
+
+  private static final int MAX_BLOCK_SIZE = 64 << 20;
+
+  private final FileChannel channel;
+  private final FileWindow window;
+  private final List<PcapNgInterface> interfaces = new ArrayList<>();
+  private long position;
+  private long blockOffset = -1;
+  private int blockIndex;
+  private int blockLength;
+  private int blockType;
+  private int interfaceId;
+  private int captureLength;
+  private int length;
+  private int dataIndex;
+  private int optionsIndex;
+
+  public PcapNgReader(Path path) throws IOException {
+    this.channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      this.window = new FileWindow(this.channel, this.channel.size(), MappedPcapReader.DEFAULT_WINDOW_SIZE);
+      if (this.window.getFileSize() < PcapNgFormat.BLOCK_HEADER_SIZE + 4) {
+        throw new IOException("Truncated pcapng file");
+      }
+
+      int offset = this.window.map(0, PcapNgFormat.BLOCK_HEADER_SIZE);
+      if (this.window.buffer().getInt(offset) != PcapNgFormat.SECTION_HEADER_BLOCK) {
+        throw new IOException("The file does not start with a pcapng section header block");
+      }
+    } catch (IOException | RuntimeException e) {
+      this.channel.close();
+      throw e;
+    }
+  }
+
+  public List<PcapNgInterface> getInterfaces() {
+    return Collections.unmodifiableList(this.interfaces);
+  }
+
+  /**
+   * Advances to the next packet block, processing the section and interface blocks in between.
+   */
+  public boolean next() throws IOException {
+    while (this.position + PcapNgFormat.BLOCK_HEADER_SIZE <= this.window.getFileSize()) {
+      this.readBlock();
+      switch (this.blockType) {
+        case PcapNgFormat.SECTION_HEADER_BLOCK:
+          this.interfaces.clear();
+          break;
+        case PcapNgFormat.INTERFACE_DESCRIPTION_BLOCK:
+          this.interfaces.add(this.readInterface());
+          break;
+        case PcapNgFormat.ENHANCED_PACKET_BLOCK:
+          this.readEnhancedPacket();
+          return true;
+        case PcapNgFormat.SIMPLE_PACKET_BLOCK:
+          this.readSimplePacket();
+          return true;
+        default:
+          break;
+      }
+    }
+
+    this.blockOffset = -1;
+    return false;
+  }
+
+  public long getBlockOffset() {
+    return this.blockOffset;
+  }
+
+  public int getInterfaceId() {
+    return this.interfaceId;
+  }
+
+  public PcapNgInterface getInterface() {
+    return this.interfaces.get(this.interfaceId);
+  }
+
+  /**
+   * Returns the raw timestamp in units of the interface timestamp resolution (0 for simple packet blocks).
+   */
+  public long getTimestamp() {
+    if (this.blockType != PcapNgFormat.ENHANCED_PACKET_BLOCK) {
+      return 0;
+    }
+
+    ByteBuffer buffer = this.window.buffer();
+    long high = buffer.getInt(this.blockIndex + 12) & 0xFFFFFFFFL;
+    return high << 32 | buffer.getInt(this.blockIndex + 16) & 0xFFFFFFFFL;
+  }
+
+  public long getEpochNanos() {
+    return this.getInterface().toEpochNanos(this.getTimestamp());
+  }
+
+  public int getCaptureLength() {
+    return this.captureLength;
+  }
+
+  public int getLength() {
+    return this.length;
+  }
+
+  /**
+   * Returns a buffer shared between calls, positioned over the current packet data until the next call of {@link #next()}.
+   */
+  public ByteBuffer getPacket() {
+    return this.window.slice(this.dataIndex, this.captureLength);
+  }
+
+  public String getComment() {
+    if (this.blockType != PcapNgFormat.ENHANCED_PACKET_BLOCK) {
+      return null;
+    }
+
+    return this.findStringOption(this.optionsIndex, PcapNgFormat.OPT_COMMENT);
+  }
+
+  private void readBlock() throws IOException {
+    int offset = this.window.map(this.position, PcapNgFormat.BLOCK_HEADER_SIZE + 4);
+    ByteBuffer buffer = this.window.buffer();
+    int type = buffer.getInt(offset);
+    if (type == PcapNgFormat.SECTION_HEADER_BLOCK) {
+      int magic = buffer.order(ByteOrder.BIG_ENDIAN).getInt(offset + PcapNgFormat.BLOCK_HEADER_SIZE);
+      if (magic == PcapNgFormat.BYTE_ORDER_MAGIC) {
+        this.window.order(ByteOrder.BIG_ENDIAN);
+      } else if (magic == Integer.reverseBytes(PcapNgFormat.BYTE_ORDER_MAGIC)) {
+        this.window.order(ByteOrder.LITTLE_ENDIAN);
+      } else {
+        throw new IOException("Invalid pcapng byte-order magic at offset " + this.position);
+      }
+    }
+
+    int blockLength = buffer.getInt(offset + 4);
+    if (blockLength < PcapNgFormat.BLOCK_HEADER_SIZE + PcapNgFormat.BLOCK_TRAILER_SIZE || blockLength > MAX_BLOCK_SIZE || (blockLength & 3) != 0) {
+      throw new IOException("Invalid pcapng block length " + blockLength + " at offset " + this.position);
+    }
+
+    this.blockIndex = this.window.map(this.position, blockLength);
+    this.blockType = this.window.buffer().getInt(this.blockIndex);
+    this.blockLength = blockLength;
+    this.blockOffset = this.position;
+    this.position += blockLength;
+  }
+
+  private PcapNgInterface readInterface() throws IOException {
+    ByteBuffer buffer = this.window.buffer();
+    int body = this.blockIndex + PcapNgFormat.BLOCK_HEADER_SIZE;
+    int linkType = buffer.getShort(body) & 0xFFFF;
+    int snaplen = buffer.getInt(body + 4);
+    int options = body + PcapNgFormat.INTERFACE_DESCRIPTION_BODY_SIZE;
+    byte resolution = PcapNgInterface.RESOLUTION_MICRO;
+    int resolutionIndex = this.findOption(options, PcapNgFormat.IF_TSRESOL);
+    if (resolutionIndex >= 0) {
+      resolution = buffer.get(resolutionIndex + 4);
+      if (!PcapNgInterface.isSupportedResolution(resolution)) {
+        throw new IOException("Unsupported if_tsresol " + Byte.toUnsignedInt(resolution) + " at offset " + this.position);
+      }
+    }
+
+    long offset = 0;
+    int offsetIndex = this.findOption(options, PcapNgFormat.IF_TSOFFSET);
+    if (offsetIndex >= 0) {
+      offset = buffer.getLong(offsetIndex + 4);
+    }
+
+    return new PcapNgInterface(linkType, snaplen, resolution, offset,
+        this.findStringOption(options, PcapNgFormat.IF_NAME), this.findStringOption(options, PcapNgFormat.IF_DESCRIPTION));
+  }
+
+  private void readEnhancedPacket() throws IOException {
+    ByteBuffer buffer = this.window.buffer();
+    int body = this.blockIndex + PcapNgFormat.BLOCK_HEADER_SIZE;
+    this.interfaceId = buffer.getInt(body);
+    this.captureLength = buffer.getInt(body + 12);
+    this.length = buffer.getInt(body + 16);
+    this.dataIndex = body + PcapNgFormat.ENHANCED_PACKET_BODY_SIZE;
+    this.optionsIndex = this.dataIndex + PcapNgFormat.pad(this.captureLength);
+    this.checkPacket();
+  }
+
+  private void readSimplePacket() throws IOException {
+    int body = this.blockIndex + PcapNgFormat.BLOCK_HEADER_SIZE;
+    this.interfaceId = 0;
+    this.length = this.window.buffer().getInt(body);
+    this.dataIndex = body + PcapNgFormat.SIMPLE_PACKET_BODY_SIZE;
+    int available = this.blockIndex + this.blockLength - PcapNgFormat.BLOCK_TRAILER_SIZE - this.dataIndex;
+    this.captureLength = Math.min(this.length, available);
+    if (!this.interfaces.isEmpty() && this.interfaces.get(0).getSnaplen() > 0) {
+      this.captureLength = Math.min(this.captureLength, this.interfaces.get(0).getSnaplen());
+    }
+
+    this.optionsIndex = -1;
+    this.checkPacket();
+  }
+
+  private void checkPacket() throws IOException {
+    if (this.interfaceId < 0 || this.interfaceId >= this.interfaces.size()) {
+      throw new IOException("Packet block at offset " + this.blockOffset + " refers to an unknown interface " + this.interfaceId);
+    }
+
+    if (this.captureLength < 0 || this.dataIndex + this.captureLength > this.blockIndex + this.blockLength - PcapNgFormat.BLOCK_TRAILER_SIZE) {
+      throw new IOException("Invalid packet capture length " + this.captureLength + " at offset " + this.blockOffset);
+    }
+  }
+
+  private int findOption(int index, short code) {
+    ByteBuffer buffer = this.window.buffer();
+    int end = this.blockIndex + this.blockLength - PcapNgFormat.BLOCK_TRAILER_SIZE;
+    while (index >= 0 && index + 4 <= end) {
+      short optionCode = buffer.getShort(index);
+      int optionLength = buffer.getShort(index + 2) & 0xFFFF;
+      if (optionCode == PcapNgFormat.OPT_END_OF_OPT) {
+        break;
+      }
+
+      if (optionCode == code) {
+        return index + 4 + optionLength <= end ? index : -1;
+      }
+
+      index += 4 + PcapNgFormat.pad(optionLength);
+    }
+
+    return -1;
+  }
+
+  private String findStringOption(int index, short code) {
+    int option = this.findOption(index, code);
+    if (option < 0) {
+      return null;
+    }
+
+    ByteBuffer buffer = this.window.buffer();
+    byte[] value = new byte[buffer.getShort(option + 2) & 0xFFFF];
+    for (int i = 0; i < value.length; i++) {
+      value[i] = buffer.get(option + 4 + i);
+    }
+
+    int length = value.length;
+    while (length > 0 && value[length - 1] == 0) {
+      length--;
+    }
+
+    return new String(value, 0, length, StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.channel.close();
+  }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2022 - 2023 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.pcap.file;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Writes pcapng files with any number of interfaces in one section.
+ * Blocks are appended to a direct buffer and written to the channel only when it fills up or on {@link #flush()}.
+ */
+public class PcapNgWriter implements Closeable, Flushable {
+
+  public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+  private final FileChannel channel;
+  private final ByteBuffer buffer;
+  private final List<PcapNgInterface> interfaces = new ArrayList<>();
+  private int blockStart;
+
+  public PcapNgWriter(Path path, int bufferSize, String comment) throws IOException {
+    this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    this.buffer = ByteBuffer.allocateDirect(bufferSize).order(ByteOrder.nativeOrder());
+    try {
+      this.writeSectionHeader(comment);
+    } catch (IOException | RuntimeException e) {
+      this.channel.close();
+      throw e;
+    }
+  }
+
+  public PcapNgWriter(Path path) throws IOException {
+    this(path, DEFAULT_BUFFER_SIZE, null);
+  }
+
+  public List<PcapNgInterface> getInterfaces() {
+    return this.interfaces;
+  }
+
+  /**
+   * Writes an interface description block and returns the id that packets of this interface are written with.
+   */
+  public int addInterface(PcapNgInterface description) throws IOException {
+    Objects.requireNonNull(description, "description");
+    byte[] name = encode(description.getName());
+    byte[] descriptionText = encode(description.getDescription());
+    int length = PcapNgFormat.BLOCK_HEADER_SIZE + PcapNgFormat.INTERFACE_DESCRIPTION_BODY_SIZE
+        + optionSize(name) + optionSize(descriptionText) + optionSize(1) + optionSize(8) + 4 + PcapNgFormat.BLOCK_TRAILER_SIZE;
+    ByteBuffer buffer = this.begin(PcapNgFormat.INTERFACE_DESCRIPTION_BLOCK, length);
+    buffer.putShort((short) description.getRawLinkType());
+    buffer.putShort((short) 0);
+    buffer.putInt(description.getSnaplen());
+    putOption(buffer, PcapNgFormat.IF_NAME, name);
+    putOption(buffer, PcapNgFormat.IF_DESCRIPTION, descriptionText);
+    buffer.putShort(PcapNgFormat.IF_TSRESOL).putShort((short) 1).put(description.getTimestampResolution());
+    putPadding(buffer, 3);
+    buffer.putShort(PcapNgFormat.IF_TSOFFSET).putShort((short) 8).putLong(description.getTimestampOffset());
+    this.end(buffer, length);
+    this.interfaces.add(description);
+    return this.interfaces.size() - 1;
+  }
+
+  public void writePacket(int interfaceId, long epochNanos, int length, ByteBuffer data, String comment) throws IOException {
+    PcapNgInterface description = this.interfaces.get(interfaceId);
+    byte[] commentText = encode(comment);
+    int captureLength = data.remaining();
+    int blockLength = PcapNgFormat.BLOCK_HEADER_SIZE + PcapNgFormat.ENHANCED_PACKET_BODY_SIZE + PcapNgFormat.pad(captureLength)
+        + (commentText == null ? 0 : optionSize(commentText) + 4) + PcapNgFormat.BLOCK_TRAILER_SIZE;
+    long timestamp = description.fromEpochNanos(epochNanos);
+    ByteBuffer buffer = this.begin(PcapNgFormat.ENHANCED_PACKET_BLOCK, blockLength);
+    buffer.putInt(interfaceId);
+    buffer.putInt((int) (timestamp >>> 32));
+    buffer.putInt((int) timestamp);
+    buffer.putInt(captureLength);
+    buffer.putInt(length);
+    buffer.put(data.duplicate());
+    putPadding(buffer, PcapNgFormat.pad(captureLength) - captureLength);
+    if (commentText != null) {
+      putOption(buffer, PcapNgFormat.OPT_COMMENT, commentText);
+    }
+
+    this.end(buffer, blockLength);
+  }
+
+  public void writePacket(int interfaceId, long epochNanos, ByteBuffer data) throws IOException {
+    this.writePacket(interfaceId, epochNanos, data.remaining(), data, null);
+  }
+
+  private void writeSectionHeader(String comment) throws IOException {
+    byte[] commentText = encode(comment);
+    int length = PcapNgFormat.BLOCK_HEADER_SIZE + PcapNgFormat.SECTION_HEADER_BODY_SIZE
+        + (commentText == null ? 0 : optionSize(commentText) + 4) + PcapNgFormat.BLOCK_TRAILER_SIZE;
+    ByteBuffer buffer = this.begin(PcapNgFormat.SECTION_HEADER_BLOCK, length);
+    buffer.putInt(PcapNgFormat.BYTE_ORDER_MAGIC);
+    buffer.putShort((short) 1);
+    buffer.putShort((short) 0);
+    buffer.putLong(-1L);
+    if (commentText != null) {
+      putOption(buffer, PcapNgFormat.OPT_COMMENT, commentText);
+    }
+
+    this.end(buffer, length);
+  }
+
+  private ByteBuffer begin(int type, int length) throws IOException {
+    ByteBuffer buffer = this.buffer;
+    if (buffer.remaining() < length) {
+      this.flush();
+      if (buffer.capacity() < length) {
+        buffer = ByteBuffer.allocate(length).order(this.buffer.order());
+      }
+    }
+
+    this.blockStart = buffer.position();
+    buffer.putInt(type);
+    buffer.putInt(length);
+    return buffer;
+  }
+
+  private void end(ByteBuffer buffer, int length) throws IOException {
+    // Whatever is left before the trailer is the closing opt_endofopt.
+    putPadding(buffer, this.blockStart + length - PcapNgFormat.BLOCK_TRAILER_SIZE - buffer.position());
+    buffer.putInt(length);
+    if (buffer != this.buffer) {
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+        this.channel.write(buffer);
+      }
+    }
+  }
+
+  private static byte[] encode(String value) {
+    return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static int optionSize(byte[] value) {
+    return value == null ? 0 : optionSize(value.length);
+  }
+
+  private static int optionSize(int length) {
+    return 4 + PcapNgFormat.pad(length);
+  }
+
+  private static void putPadding(ByteBuffer buffer, int count) {
+    for (int i = 0; i < count; i++) {
+      buffer.put((byte) 0);
+    }
+  }
+
+  private static void putOption(ByteBuffer buffer, short code, byte[] value) {
+    if (value == null) {
+      return;
+    }
+
+    buffer.putShort(code);
+    buffer.putShort((short) value.length);
+    buffer.put(value);
+    putPadding(buffer, PcapNgFormat.pad(value.length) - value.length);
+  }
+
+  @Override
+  public void flush() throws IOException {
+    this.buffer.flip();
+    while (this.buffer.hasRemaining()) {
+      this.channel.write(this.buffer);
+    }
+
+    this.buffer.clear();
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      this.flush();
+    } finally {
+      this.channel.close();
+    }
+  }
+}
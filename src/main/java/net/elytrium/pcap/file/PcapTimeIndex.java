@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2022 - 2023 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.pcap.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sparse timestamp to file offset index of a classic pcap file, stored in a sidecar file next to the capture.
+ * Lookups assume records are written in roughly chronological order, as captures are.
+ */
+public class PcapTimeIndex {
+
+  public static final String SUFFIX = ".tidx";
+  public static final long DEFAULT_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+  static final int MAGIC = 0x50544958;
+  static final int VERSION = 1;
+  static final int HEADER_SIZE = 16;
+  static final int ENTRY_SIZE = 16;
+
+  private final long interval;
+  private final long[] timestamps;
+  private final long[] offsets;
+
+  private PcapTimeIndex(long interval, long[] timestamps, long[] offsets) {
+    this.interval = interval;
+    this.timestamps = timestamps;
+    this.offsets = offsets;
+  }
+
+  public static Path sidecar(Path capture) {
+    return capture.resolveSibling(capture.getFileName() + SUFFIX);
+  }
+
+  /**
+   * Indexes an existing capture in one sequential pass and writes the sidecar.
+   */
+  public static PcapTimeIndex build(Path capture, long interval) throws IOException {
+    try (MappedPcapReader reader = new MappedPcapReader(capture);
+         TimeIndexWriter writer = new TimeIndexWriter(sidecar(capture), interval)) {
+      while (reader.next()) {
+        long epochNanos = reader.getEpochNanos();
+        if (writer.isDue(epochNanos)) {
+          writer.add(epochNanos, reader.getRecordOffset());
+        }
+      }
+    }
+
+    return load(sidecar(capture));
+  }
+
+  public static PcapTimeIndex load(Path sidecar) throws IOException {
+    try (FileChannel channel = FileChannel.open(sidecar, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size < HEADER_SIZE || (size - HEADER_SIZE) % ENTRY_SIZE != 0 || size > Integer.MAX_VALUE) {
+        throw new IOException("Invalid time index size " + size);
+      }
+
+      ByteBuffer buffer = ByteBuffer.allocate((int) size);
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer) < 0) {
+          break;
+        }
+      }
+
+      buffer.flip();
+      if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+        throw new IOException("Not a time index: " + sidecar);
+      }
+
+      long interval = buffer.getLong();
+      int count = buffer.remaining() / ENTRY_SIZE;
+      long[] timestamps = new long[count];
+      long[] offsets = new long[count];
+      for (int i = 0; i < count; i++) {
+        timestamps[i] = buffer.getLong();
+        offsets[i] = buffer.getLong();
+      }
+
+      return new PcapTimeIndex(interval, timestamps, offsets);
+    }
+  }
+
+  public long getInterval() {
+    return this.interval;
+  }
+
+  public int size() {
+    return this.timestamps.length;
+  }
+
+  /**
+   * Returns the offset of the last indexed record not later than the timestamp, or the first record offset.
+   */
+  public long floorOffset(long epochNanos) {
+    int index = this.search(epochNanos);
+    return index < 0 ? PcapFileHeader.SIZE : this.offsets[index];
+  }
+
+  /**
+   * Returns the offset of the first indexed record later than the timestamp, or -1 if there is none.
+   */
+  public long higherOffset(long epochNanos) {
+    int index = this.search(epochNanos) + 1;
+    return index < this.offsets.length ? this.offsets[index] : -1;
+  }
+
+  /**
+   * Opens the capture so that {@link MappedPcapReader#next()} starts at the first record at or after {@code from}
+   * and the mapping ends at the index entry following {@code to}; only the bytes in between are read.
+   * The caller still stops at the first record later than {@code to}.
+   */
+  public MappedPcapReader open(Path capture, long from, long to) throws IOException {
+    MappedPcapReader reader = new MappedPcapReader(capture);
+    try {
+      long end = this.higherOffset(to);
+      if (end >= 0) {
+        reader.setEnd(end);
+      }
+
+      reader.position(this.floorOffset(from));
+      while (reader.next()) {
+        if (reader.getEpochNanos() >= from) {
+          reader.position(reader.getRecordOffset());
+          break;
+        }
+      }
+
+      return reader;
+    } catch (IOException | RuntimeException e) {
+      reader.close();
+      throw e;
+    }
+  }
+
+  public MappedPcapReader open(Path capture, long from) throws IOException {
+    return this.open(capture, from, Long.MAX_VALUE);
+  }
+
+  private int search(long epochNanos) {
+    int index = Arrays.binarySearch(this.timestamps, epochNanos);
+    if (index < 0) {
+      return -index - 2;
+    }
+
+    while (index > 0 && this.timestamps[index - 1] == epochNanos) {
+      index--;
+    }
+
+    return index;
+  }
+}
@@ -0,0 +1,409 @@
+/*
+ * Copyright (C) 2022 - 2023 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.pcap.file;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import net.elytrium.pcap.data.PcapPacketHeader;
+import net.elytrium.pcap.data.PcapPacketHeaderView;
+import net.elytrium.pcap.data.TstampPrecision;
+
+/**
+ * Writes classic pcap files from Java. Records are appended to one of a few direct buffers; full buffers are handed to
+ * a background thread that writes everything queued with a single gathering write, so one write (and fsync, if enabled)
+ * commits many buffers at once. A partially filled buffer older than the flush interval is handed off too, either on
+ * the next write or by the background thread when no packets arrive. Writing is meant for a single producer thread;
+ * when all buffers are in flight, the producer waits for the writer.
+ */
+public class PcapWriter implements Closeable, Flushable {
+
+  public static final int DEFAULT_BUFFER_SIZE = 4 << 20;
+  public static final int DEFAULT_BUFFER_COUNT = 4;
+  public static final long DEFAULT_FLUSH_INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+
+  private static final ByteBuffer CLOSE = ByteBuffer.allocate(0);
+
+  private final FileChannel channel;
+  private final PcapFileHeader header;
+  private final long flushInterval;
+  private final boolean sync;
+  private final BlockingQueue<ByteBuffer> free;
+  private final BlockingQueue<ByteBuffer> filled;
+  private final ByteBuffer[] batch;
+  private final Thread thread;
+  private final Object lock = new Object();
+  private final ReentrantLock producerLock = new ReentrantLock();
+  private ByteBuffer current;
+  private long currentSince;
+  private long submitted;
+  private long submittedBytes;
+  private long written;
+  private long writtenBytes;
+  private volatile IOException failure;
+  private volatile boolean closed;
+
+  public PcapWriter(Path path, PcapFileHeader header, int bufferSize, int bufferCount, long flushInterval, boolean sync) throws IOException {
+    if (bufferSize < PcapFileHeader.SIZE + PcapFileHeader.RECORD_HEADER_SIZE + header.getSnaplen()) {
+      throw new IllegalArgumentException("bufferSize should fit a record of snaplen bytes");
+    }
+
+    if (bufferCount < 2) {
+      throw new IllegalArgumentException("bufferCount should be at least 2");
+    }
+
+    this.header = header;
+    this.flushInterval = flushInterval;
+    this.sync = sync;
+    this.free = new ArrayBlockingQueue<>(bufferCount);
+    this.filled = new ArrayBlockingQueue<>(bufferCount + 1);
+    this.batch = new ByteBuffer[bufferCount];
+    for (int i = 1; i < bufferCount; i++) {
+      this.free.add(ByteBuffer.allocateDirect(bufferSize).order(header.getByteOrder()));
+    }
+
+    this.current = ByteBuffer.allocateDirect(bufferSize).order(header.getByteOrder());
+    this.header.write(this.current);
+    this.currentSince = System.nanoTime();
+    this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    this.thread = new Thread(this::run, "pcap-writer-" + path.getFileName());
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  public PcapWriter(Path path, PcapFileHeader header) throws IOException {
+    this(path, header, DEFAULT_BUFFER_SIZE, DEFAULT_BUFFER_COUNT, DEFAULT_FLUSH_INTERVAL, false);
+  }
+
+  public PcapFileHeader getHeader() {
+    return this.header;
+  }
+
+  /**
+   * Appends a record. The fraction is in microseconds or nanoseconds, depending on the file precision.
+   * Data beyond the snaplen is truncated.
+   */
+  public void write(long seconds, long fraction, int length, ByteBuffer data) throws IOException {
+    this.checkFailure();
+    this.producerLock.lock();
+    try {
+      this.checkOpen();
+      this.append(seconds, fraction, length, data);
+    } finally {
+      this.producerLock.unlock();
+    }
+  }
+
+  private void append(long seconds, long fraction, int length, ByteBuffer data) throws IOException {
+    int captureLength = Math.min(data.remaining(), this.header.getSnaplen());
+    if (this.current.remaining() < PcapFileHeader.RECORD_HEADER_SIZE + captureLength) {
+      this.submit();
+    }
+
+    ByteBuffer buffer = this.current;
+    buffer.putInt((int) seconds);
+    buffer.putInt((int) fraction);
+    buffer.putInt(captureLength);
+    buffer.putInt(Math.max(length, captureLength));
+    if (captureLength == data.remaining()) {
+      buffer.put(data.duplicate());
+    } else {
+      ByteBuffer slice = data.duplicate();
+      slice.limit(slice.position() + captureLength);
+      buffer.put(slice);
+    }
+
+    if (this.flushInterval >= 0 && System.nanoTime() - this.currentSince >= this.flushInterval) {
+      this.submit();
+    }
+  }
+
+  public void write(long epochNanos, int length, ByteBuffer data) throws IOException {
+    long seconds = Math.floorDiv(epochNanos, 1_000_000_000L);
+    long nanos = Math.floorMod(epochNanos, 1_000_000_000L);
+    this.write(seconds, this.header.getPrecision() == TstampPrecision.NANO ? nanos : nanos / 1_000L, length, data);
+  }
+
+  public void write(long epochNanos, ByteBuffer data) throws IOException {
+    this.write(epochNanos, data.remaining(), data);
+  }
+
+  public void write(PcapPacketHeader header, TstampPrecision precision, ByteBuffer data) throws IOException {
+    this.write(header.getEpochNanos(precision), header.getLength(), data);
+  }
+
+  public void write(PcapPacketHeaderView header, ByteBuffer data) throws IOException {
+    this.write(header.getEpochNanos(), header.getLength(), data);
+  }
+
+  /**
+   * Returns the file offset the next record will be written at.
+   */
+  public long getPosition() {
+    this.producerLock.lock();
+    try {
+      return this.submittedBytes + this.current.position();
+    } finally {
+      this.producerLock.unlock();
+    }
+  }
+
+  public long getWrittenBytes() {
+    synchronized (this.lock) {
+      return this.writtenBytes;
+    }
+  }
+
+  /**
+   * Hands off the current buffer and waits until everything written so far has reached the file.
+   */
+  @Override
+  public void flush() throws IOException {
+    this.checkFailure();
+    this.producerLock.lock();
+    try {
+      this.checkOpen();
+      this.submitPending();
+    } finally {
+      this.producerLock.unlock();
+    }
+
+    this.awaitWritten();
+  }
+
+  private void submitPending() throws IOException {
+    if (this.current.position() > 0) {
+      this.submit();
+    }
+  }
+
+  private void awaitWritten() throws IOException {
+    synchronized (this.lock) {
+      while (this.written < this.submitted && this.failure == null) {
+        try {
+          this.lock.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException();
+        }
+      }
+    }
+
+    this.checkFailure();
+  }
+
+  /**
+   * Flushes and then forces the file contents to the storage device.
+   */
+  public void force() throws IOException {
+    this.flush();
+    this.channel.force(true);
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.producerLock.lock();
+    try {
+      if (this.closed) {
+        return;
+      }
+
+      this.closed = true;
+    } finally {
+      this.producerLock.unlock();
+    }
+
+    try {
+      if (this.failure == null) {
+        this.producerLock.lock();
+        try {
+          this.submitPending();
+        } finally {
+          this.producerLock.unlock();
+        }
+
+        this.awaitWritten();
+      }
+    } finally {
+      this.filled.add(CLOSE);
+      try {
+        this.thread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+
+      this.channel.close();
+    }
+
+    this.checkFailure();
+  }
+
+  private void submit() throws IOException {
+    try {
+      ByteBuffer next = this.free.take();
+      this.checkFailure();
+      synchronized (this.lock) {
+        this.submitted++;
+      }
+
+      this.current.flip();
+      this.submittedBytes += this.current.remaining();
+      this.filled.add(this.current);
+      this.current = next;
+      this.currentSince = System.nanoTime();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+  }
+
+  /**
+   * Called by the writer thread when it has been idle for the flush interval. The producer lock is only tried, since a
+   * producer holding it may be waiting for a free buffer from this thread.
+   */
+  private void submitIfStale() {
+    if (!this.producerLock.tryLock()) {
+      return;
+    }
+
+    try {
+      if (this.closed || this.current.position() == 0 || System.nanoTime() - this.currentSince < this.flushInterval) {
+        return;
+      }
+
+      ByteBuffer next = this.free.poll();
+      if (next == null) {
+        return;
+      }
+
+      synchronized (this.lock) {
+        this.submitted++;
+      }
+
+      this.current.flip();
+      this.submittedBytes += this.current.remaining();
+      this.filled.add(this.current);
+      this.current = next;
+      this.currentSince = System.nanoTime();
+    } finally {
+      this.producerLock.unlock();
+    }
+  }
+
+  private void checkOpen() throws IOException {
+    if (this.closed) {
+      throw new IOException("The writer is closed");
+    }
+  }
+
+  private void checkFailure() throws IOException {
+    IOException failure = this.failure;
+    if (failure != null) {
+      throw new IOException("The writer thread failed", failure);
+    }
+  }
+
+  private void run() {
+    List<ByteBuffer> drained = new ArrayList<>(this.batch.length);
+    boolean running = true;
+    while (running) {
+      try {
+        ByteBuffer first = this.flushInterval > 0 ? this.filled.poll(this.flushInterval, TimeUnit.NANOSECONDS) : this.filled.take();
+        if (first == null) {
+          this.submitIfStale();
+          continue;
+        }
+
+        drained.add(first);
+        this.filled.drainTo(drained, this.batch.length - 1);
+        int count = 0;
+        for (ByteBuffer buffer : drained) {
+          if (buffer == CLOSE) {
+            running = false;
+          } else {
+            this.batch[count++] = buffer;
+          }
+        }
+
+        drained.clear();
+        if (count == 0) {
+          continue;
+        }
+
+        long bytes = 0;
+        if (this.failure == null) {
+          try {
+            bytes = this.writeBatch(count);
+          } catch (IOException e) {
+            this.failure = e;
+          }
+        }
+
+        for (int i = 0; i < count; i++) {
+          this.batch[i].clear();
+          this.free.add(this.batch[i]);
+          this.batch[i] = null;
+        }
+
+        synchronized (this.lock) {
+          this.written += count;
+          this.writtenBytes += bytes;
+          this.lock.notifyAll();
+        }
+      } catch (InterruptedException e) {
+        this.failure = new InterruptedIOException("The writer thread was interrupted");
+        // Wakes a producer waiting for a free buffer; it then sees the failure.
+        this.free.offer(CLOSE);
+        synchronized (this.lock) {
+          this.lock.notifyAll();
+        }
+
+        return;
+      }
+    }
+  }
+
+  private long writeBatch(int count) throws IOException {
+    long bytes = 0;
+    for (int i = 0; i < count; i++) {
+      bytes += this.batch[i].remaining();
+    }
+
+    long remaining = bytes;
+    while (remaining > 0) {
+      remaining -= this.channel.write(this.batch, 0, count);
+    }
+
+    if (this.sync) {
+      this.channel.force(false);
+    }
+
+    return bytes;
+  }
+}
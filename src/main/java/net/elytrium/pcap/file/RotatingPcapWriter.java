@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2022 - 2023 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.pcap.file;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import net.elytrium.pcap.data.PcapPacketHeaderView;
+
+/**
+ * Splits a recording into a sequence of files, like tcpdump -C and -G. A file is rolled when it would exceed the size
+ * limit or when the packet timestamp crosses the next multiple of the rotation interval. The next file is opened ahead
+ * of time and the finished one is flushed, fsynced and closed on a background thread, so the writing thread never waits
+ * for the file system. Finished files beyond the retention limits (file count and total bytes) are deleted oldest first.
+ * Limits of 0 disable the respective rule.
+ */
+public class RotatingPcapWriter implements Closeable {
+
+  private final IntFunction<Path> naming;
+  private final PcapFileHeader header;
+  private final long maxFileBytes;
+  private final long rotateInterval;
+  private final int maxFiles;
+  private final long maxTotalBytes;
+  private final ExecutorService openExecutor;
+  private final ExecutorService finishExecutor;
+  private final Deque<Path> finishedFiles = new ArrayDeque<>();
+  private final Deque<Long> finishedSizes = new ArrayDeque<>();
+  private long finishedBytes;
+  private int nextIndex;
+  private PcapWriter current;
+  private Path currentPath;
+  private long currentBytes;
+  private long nextRotation = Long.MIN_VALUE;
+  private Future<PcapWriter> prepared;
+  private Path preparedPath;
+  private volatile IOException failure;
+
+  public RotatingPcapWriter(IntFunction<Path> naming, PcapFileHeader header, long maxFileBytes, long rotateInterval, TimeUnit unit,
+                            int maxFiles, long maxTotalBytes) throws IOException {
+    this.naming = naming;
+    this.header = header;
+    this.maxFileBytes = maxFileBytes;
+    this.rotateInterval = unit.toNanos(rotateInterval);
+    this.maxFiles = maxFiles;
+    this.maxTotalBytes = maxTotalBytes;
+    // Separate threads, so opening the next file never waits behind the fsync of the previous one.
+    this.openExecutor = newExecutor("pcap-rotation-open");
+    this.finishExecutor = newExecutor("pcap-rotation-finish");
+
+    this.prepare();
+    this.rotate();
+  }
+
+  public RotatingPcapWriter(Path directory, String prefix, PcapFileHeader header, long maxFileBytes, int maxFiles) throws IOException {
+    this(naming(directory, prefix), header, maxFileBytes, 0, TimeUnit.SECONDS, maxFiles, 0);
+  }
+
+  private static ExecutorService newExecutor(String name) {
+    return Executors.newSingleThreadExecutor(task -> {
+      Thread thread = new Thread(task, name);
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  public static IntFunction<Path> naming(Path directory, String prefix) {
+    return index -> directory.resolve(String.format("%s.%05d.pcap", prefix, index));
+  }
+
+  public Path getCurrentPath() {
+    return this.currentPath;
+  }
+
+  public void write(long epochNanos, int length, ByteBuffer data) throws IOException {
+    this.checkFailure();
+    long recordBytes = PcapFileHeader.RECORD_HEADER_SIZE + Math.min(data.remaining(), this.header.getSnaplen());
+    if (this.rotateInterval > 0) {
+      if (this.nextRotation == Long.MIN_VALUE) {
+        this.nextRotation = this.rotationAfter(epochNanos);
+      } else if (epochNanos >= this.nextRotation) {
+        this.rotate();
+        this.nextRotation = this.rotationAfter(epochNanos);
+      }
+    }
+
+    if (this.maxFileBytes > 0 && this.currentBytes > PcapFileHeader.SIZE && this.currentBytes + recordBytes > this.maxFileBytes) {
+      this.rotate();
+    }
+
+    this.current.write(epochNanos, length, data);
+    this.currentBytes += recordBytes;
+  }
+
+  public void write(long epochNanos, ByteBuffer data) throws IOException {
+    this.write(epochNanos, data.remaining(), data);
+  }
+
+  public void write(PcapPacketHeaderView header, ByteBuffer data) throws IOException {
+    this.write(header.getEpochNanos(), header.getLength(), data);
+  }
+
+  /**
+   * Finishes the current file and continues in the next one.
+   */
+  public void rotate() throws IOException {
+    PcapWriter next = this.takePrepared();
+    Path nextPath = this.preparedPath;
+    if (this.current != null) {
+      this.finish(this.current, this.currentPath);
+    }
+
+    this.current = next;
+    this.currentPath = nextPath;
+    this.currentBytes = PcapFileHeader.SIZE;
+    this.prepare();
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      if (this.current != null) {
+        this.finish(this.current, this.currentPath);
+        this.current = null;
+      }
+
+      PcapWriter unused = this.takePrepared();
+      unused.close();
+      Files.deleteIfExists(this.preparedPath);
+    } finally {
+      this.openExecutor.shutdown();
+      this.finishExecutor.shutdown();
+      try {
+        this.openExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        this.finishExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    this.checkFailure();
+  }
+
+  private long rotationAfter(long epochNanos) {
+    return Math.floorDiv(epochNanos, this.rotateInterval) * this.rotateInterval + this.rotateInterval;
+  }
+
+  private void prepare() {
+    Path path = this.naming.apply(this.nextIndex++);
+    this.preparedPath = path;
+    this.prepared = this.openExecutor.submit(() -> new PcapWriter(path, this.header));
+  }
+
+  private PcapWriter takePrepared() throws IOException {
+    try {
+      return this.prepared.get();
+    } catch (ExecutionException e) {
+      throw new IOException("Failed to open " + this.preparedPath, e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while opening " + this.preparedPath, e);
+    }
+  }
+
+  private void finish(PcapWriter writer, Path path) {
+    this.finishExecutor.execute(() -> {
+      try {
+        try {
+          writer.force();
+        } finally {
+          writer.close();
+        }
+
+        this.retain(path, Files.size(path));
+      } catch (IOException e) {
+        this.failure = e;
+      }
+    });
+  }
+
+  private void retain(Path path, long size) throws IOException {
+    this.finishedFiles.addLast(path);
+    this.finishedSizes.addLast(size);
+    this.finishedBytes += size;
+    while (!this.finishedFiles.isEmpty()
+        && ((this.maxFiles > 0 && this.finishedFiles.size() > this.maxFiles)
+        || (this.maxTotalBytes > 0 && this.finishedBytes > this.maxTotalBytes))) {
+      Files.deleteIfExists(this.finishedFiles.removeFirst());
+      this.finishedBytes -= this.finishedSizes.removeFirst();
+    }
+  }
+
+  private void checkFailure() throws IOException {
+    IOException failure = this.failure;
+    if (failure != null) {
+      throw new IOException("Background rotation failed", failure);
+    }
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2022 - 2023 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.pcap.file;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import net.elytrium.pcap.PcapException;
+import net.elytrium.pcap.data.PcapPacketHeader;
+import net.elytrium.pcap.data.TstampPrecision;
+import net.elytrium.pcap.handle.PcapDumper;
+
+/**
+ * Writes a {@link PcapTimeIndex} sidecar while a capture is being written. An entry is kept for the first record at or
+ * after every interval, so entry timestamps never decrease.
+ */
+public class TimeIndexWriter implements Closeable {
+
+  private final FileChannel channel;
+  private final ByteBuffer buffer = ByteBuffer.allocate(64 << 10);
+  private final long interval;
+  private long next = Long.MIN_VALUE;
+
+  public TimeIndexWriter(Path sidecar, long interval) throws IOException {
+    if (interval <= 0) {
+      throw new IllegalArgumentException("interval should be positive");
+    }
+
+    this.channel = FileChannel.open(sidecar, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    this.interval = interval;
+    this.buffer.putInt(PcapTimeIndex.MAGIC);
+    this.buffer.putInt(PcapTimeIndex.VERSION);
+    this.buffer.putLong(interval);
+  }
+
+  public boolean isDue(long epochNanos) {
+    return epochNanos >= this.next;
+  }
+
+  /**
+   * Records the offset of a record if an entry is due for its timestamp.
+   */
+  public void add(long epochNanos, long offset) throws IOException {
+    if (epochNanos < this.next) {
+      return;
+    }
+
+    if (this.buffer.remaining() < PcapTimeIndex.ENTRY_SIZE) {
+      this.flush();
+    }
+
+    this.buffer.putLong(epochNanos);
+    this.buffer.putLong(offset);
+    this.next = Math.floorDiv(epochNanos, this.interval) * this.interval + this.interval;
+  }
+
+  /**
+   * Dumps the packet, indexing it first if due. The dumper is asked for its position only when an entry is written.
+   */
+  public void dump(PcapDumper dumper, PcapPacketHeader header, TstampPrecision precision, ByteBuffer buffer)
+      throws IOException, PcapException {
+    long epochNanos = header.getEpochNanos(precision);
+    if (this.isDue(epochNanos)) {
+      this.add(epochNanos, dumper.ftell());
+    }
+
+    dumper.dump(header, buffer);
+  }
+
+  public void write(PcapWriter writer, long epochNanos, int length, ByteBuffer data) throws IOException {
+    if (this.isDue(epochNanos)) {
+      this.add(epochNanos, writer.getPosition());
+    }
+
+    writer.write(epochNanos, length, data);
+  }
+
+  private void flush() throws IOException {
+    this.buffer.flip();
+    while (this.buffer.hasRemaining()) {
+      this.channel.write(this.buffer);
+    }
+
+    this.buffer.clear();
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      this.flush();
+    } finally {
+      this.channel.close();
+    }
+  }
+}
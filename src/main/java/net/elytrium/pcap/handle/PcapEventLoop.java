@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2022 - 2023 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.pcap.handle;
+
+import java.util.Arrays;
+import java.util.Objects;
+import net.elytrium.pcap.PcapException;
+import net.elytrium.pcap.PcapNative;
+import net.elytrium.pcap.PcapViewHandler;
+import net.elytrium.pcap.data.PcapPacketView;
+
+/**
+ * Multiplexes many non-blocking handles on one thread with epoll, dispatching only the handles that are ready.
+ */
+public class PcapEventLoop {
+
+  public static final int DEFAULT_BUDGET = 256;
+
+  private static final int EPOLL_CTL_ADD = 1;
+  private static final int EPOLL_CTL_DEL = 2;
+  private static final int EPOLLIN = 0x001;
+  private static final int WAKEUP = -1;
+
+  private final int epfd;
+  private final int wakeupFd;
+  private final int[] ready = new int[256];
+  private volatile Registration[] registrations = new Registration[0];
+  private volatile boolean closed;
+  private boolean running;
+  private long round;
+
+  public PcapEventLoop() throws PcapException {
+    this.epfd = PcapNative.epollCreate();
+    if (this.epfd < 0) {
+      throw new PcapException(PcapNative.getErrorBuffer());
+    }
+
+    this.wakeupFd = PcapNative.eventfdCreate();
+    if (this.wakeupFd < 0 || PcapNative.epollCtl(this.epfd, EPOLL_CTL_ADD, this.wakeupFd, EPOLLIN, WAKEUP) < 0) {
+      String error = PcapNative.getErrorBuffer();
+      this.release();
+      throw new PcapException(error);
+    }
+  }
+
+  public synchronized void register(PcapHandle handle, int budget, PcapViewHandler handler) throws PcapException {
+    Objects.requireNonNull(handle, "handle");
+    Objects.requireNonNull(handler, "handler");
+    if (this.closed) {
+      throw new IllegalStateException("The event loop is closed.");
+    }
+
+    int fd = handle.getSelectableFd();
+    if (fd < 0) {
+      throw new PcapException("The handle has no selectable file descriptor.");
+    }
+
+    handle.setNonBlock(1);
+
+    Registration[] registrations = this.registrations;
+    int id = 0;
+    while (id < registrations.length && registrations[id] != null) {
+      id++;
+    }
+
+    if (PcapNative.epollCtl(this.epfd, EPOLL_CTL_ADD, fd, EPOLLIN, id) < 0) {
+      throw new PcapException(PcapNative.getErrorBuffer());
+    }
+
+    registrations = Arrays.copyOf(registrations, Math.max(registrations.length, id + 1));
+    registrations[id] = new Registration(handle, fd, budget, handler);
+    this.registrations = registrations;
+  }
+
+  public void register(PcapHandle handle, PcapViewHandler handler) throws PcapException {
+    this.register(handle, DEFAULT_BUDGET, handler);
+  }
+
+  public synchronized void unregister(PcapHandle handle) throws PcapException {
+    Registration[] registrations = this.registrations;
+    for (int id = 0; id < registrations.length; id++) {
+      Registration registration = registrations[id];
+      if (registration != null && registration.handle == handle) {
+        if (PcapNative.epollCtl(this.epfd, EPOLL_CTL_DEL, registration.fd, 0, id) < 0) {
+          throw new PcapException(PcapNative.getErrorBuffer());
+        }
+
+        registrations = registrations.clone();
+        registrations[id] = null;
+        this.registrations = registrations;
+        return;
+      }
+    }
+  }
+
+  public int poll(int timeout) throws PcapException {
+    Registration[] registrations = this.registrations;
+    for (Registration registration : registrations) {
+      if (registration != null && registration.requiredTimeout >= 0 && (timeout < 0 || registration.requiredTimeout < timeout)) {
+        timeout = registration.requiredTimeout;
+      }
+    }
+
+    int count = PcapNative.epollWait(this.epfd, this.ready, timeout);
+    if (count < 0) {
+      throw new PcapException(PcapNative.getErrorBuffer());
+    }
+
+    int packets = 0;
+    long round = ++this.round;
+    registrations = this.registrations;
+    for (int i = 0; i < count; i++) {
+      int id = this.ready[i];
+      if (id == WAKEUP) {
+        PcapNative.eventfdDrain(this.wakeupFd);
+      } else if (id < registrations.length && registrations[id] != null) {
+        registrations[id].round = round;
+        packets += registrations[id].dispatch();
+      }
+    }
+
+    // Handles that need a periodic dispatch and were not reported ready in this round.
+    for (Registration registration : registrations) {
+      if (registration != null && registration.requiredTimeout >= 0 && registration.round != round) {
+        packets += registration.dispatch();
+      }
+    }
+
+    return packets;
+  }
+
+  public void run() throws PcapException {
+    synchronized (this) {
+      if (this.closed || this.running) {
+        throw new IllegalStateException("The event loop is closed or already running.");
+      }
+
+      this.running = true;
+    }
+
+    try {
+      while (!this.closed) {
+        this.poll(-1);
+      }
+    } finally {
+      synchronized (this) {
+        this.running = false;
+        if (this.closed) {
+          this.release();
+        }
+      }
+    }
+  }
+
+  public void wakeup() {
+    PcapNative.eventfdSignal(this.wakeupFd);
+  }
+
+  public synchronized void close() {
+    if (this.closed) {
+      return;
+    }
+
+    this.closed = true;
+    if (this.running) {
+      this.wakeup();
+    } else {
+      this.release();
+    }
+  }
+
+  private void release() {
+    if (this.wakeupFd >= 0) {
+      PcapNative.closeFd(this.wakeupFd);
+    }
+
+    PcapNative.closeFd(this.epfd);
+  }
+
+  private static class Registration {
+
+    private final PcapHandle handle;
+    private final int fd;
+    private final int budget;
+    private final int requiredTimeout;
+    private final PcapViewHandler handler;
+    private final PcapPacketView view;
+    private long round;
+
+    private Registration(PcapHandle handle, int fd, int budget, PcapViewHandler handler) {
+      this.handle = handle;
+      this.fd = fd;
+      this.budget = budget;
+      this.requiredTimeout = handle.getRequiredSelectTimeout();
+      this.handler = handler;
+      this.view = new PcapPacketView(handle.getTstampPrecision());
+    }
+
+    private int dispatch() throws PcapException {
+      return this.handle.dispatchView(this.budget, this.view, this.handler);
+    }
+  }
+}
@@ -22,14 +22,21 @@ import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import net.elytrium.pcap.BatchHandler;
 import net.elytrium.pcap.PcapException;
 import net.elytrium.pcap.PcapHandler;
 import net.elytrium.pcap.PcapNative;
+import net.elytrium.pcap.PcapViewHandler;
+import net.elytrium.pcap.data.AggregationTable;
+import net.elytrium.pcap.data.FanoutMode;
+import net.elytrium.pcap.data.PcapBatch;
 import net.elytrium.pcap.data.PcapDirection;
 import net.elytrium.pcap.data.PcapError;
 import net.elytrium.pcap.data.PcapPacketHeader;
+import net.elytrium.pcap.data.PcapPacketView;
 import net.elytrium.pcap.data.PcapRawPacket;
 import net.elytrium.pcap.data.PcapStat;
+import net.elytrium.pcap.data.RecordProgress;
 import net.elytrium.pcap.data.TstampPrecision;
 import net.elytrium.pcap.data.TstampType;
 import net.elytrium.pcap.layer.data.EthernetProtocol;
@@ -40,7 +47,15 @@ import sun.misc.Unsafe;
 
 public class PcapHandle {
 
+  public static final int NEXT_PACKET = 1;
+  public static final int NEXT_TIMEOUT = 0;
+  public static final int NEXT_END_OF_FILE = -2;
+
+  private static final int NON_BLOCK_POLL_TIMEOUT = 100;
+
   private final long address;
+  private final long[] nextAddresses = new long[2];
+  private PcapBatch batch;
 
   public PcapHandle(long address) {
     this.address = address;
@@ -188,9 +203,141 @@ public class PcapHandle {
     PcapError.throwIfNotSuccess(PcapNative.loop(this.address, count, handler));
   }
 
-  public void dispatch(int count, PcapHandler handler) throws PcapException {
+  public int dispatch(int count, PcapHandler handler) throws PcapException {
+    Objects.requireNonNull(handler, "handler");
+    int result = PcapNative.dispatch(this.address, count, handler);
+    if (result < 0) {
+      PcapError.throwIfNotSuccess(result);
+    }
+
+    return result;
+  }
+
+  public void loopView(int count, PcapPacketView view, PcapViewHandler handler) throws PcapException {
+    Objects.requireNonNull(view, "view");
+    Objects.requireNonNull(handler, "handler");
+    PcapError.throwIfNotSuccess(PcapNative.loopView(this.address, count, view, handler));
+  }
+
+  public void loopView(int count, PcapViewHandler handler) throws PcapException {
+    this.loopView(count, new PcapPacketView(this.getTstampPrecision()), handler);
+  }
+
+  public void loopNonBlock(int count, PcapViewHandler handler) throws PcapException {
+    PcapPacketView view = new PcapPacketView(this.getTstampPrecision());
+    boolean offline = this.file() != 0;
+    int fd = -1;
+    int timeout = this.getRequiredSelectTimeout();
+    if (!offline) {
+      fd = this.getSelectableFd();
+      if (fd < 0) {
+        throw new PcapException("The handle has no selectable file descriptor.");
+      }
+
+      this.setNonBlock(1);
+      if (timeout < 0) {
+        timeout = NON_BLOCK_POLL_TIMEOUT;
+      }
+    }
+
+    int remaining = count;
+    while (count <= 0 || remaining > 0) {
+      int processed = this.dispatchView(count <= 0 ? -1 : remaining, view, handler);
+      if (processed == 0) {
+        if (offline) {
+          return;
+        }
+
+        PcapPoller.awaitReadable(fd, timeout);
+      }
+
+      remaining -= processed;
+    }
+  }
+
+  public boolean awaitReadable(int timeout) throws PcapException {
+    int fd = this.getSelectableFd();
+    if (fd < 0) {
+      throw new PcapException("The handle has no selectable file descriptor.");
+    }
+
+    return PcapPoller.awaitReadable(fd, timeout);
+  }
+
+  public int dispatchView(int count, PcapPacketView view, PcapViewHandler handler) throws PcapException {
+    Objects.requireNonNull(view, "view");
+    Objects.requireNonNull(handler, "handler");
+    int result = PcapNative.dispatchView(this.address, count, view, handler);
+    if (result < 0) {
+      PcapError.throwIfNotSuccess(result);
+    }
+
+    return result;
+  }
+
+  public int dispatchView(int count, PcapViewHandler handler) throws PcapException {
+    return this.dispatchView(count, new PcapPacketView(this.getTstampPrecision()), handler);
+  }
+
+  public int dispatchBatch(int maxPackets, PcapBatch batch, BatchHandler handler) throws PcapException {
+    Objects.requireNonNull(batch, "batch");
+    Objects.requireNonNull(handler, "handler");
+    int count = PcapNative.dispatchBatch(this.address, maxPackets, batch.getByteBuffer(), batch, handler);
+    if (count < 0) {
+      PcapError.throwIfNotSuccess(count);
+    }
+
+    return count;
+  }
+
+  public int dispatchBatch(int maxPackets, BatchHandler handler) throws PcapException {
+    return this.dispatchBatch(maxPackets, this.getBatch(), handler);
+  }
+
+  public void loopBatch(int count, PcapBatch batch, BatchHandler handler) throws PcapException {
+    Objects.requireNonNull(batch, "batch");
     Objects.requireNonNull(handler, "handler");
-    PcapError.throwIfNotSuccess(PcapNative.dispatch(this.address, count, handler));
+    PcapError.throwIfNotSuccess(PcapNative.loopBatch(this.address, count, batch.getByteBuffer(), batch, handler));
+  }
+
+  public void loopBatch(int count, BatchHandler handler) throws PcapException {
+    this.loopBatch(count, this.getBatch(), handler);
+  }
+
+  private PcapBatch getBatch() {
+    if (this.batch == null) {
+      this.batch = new PcapBatch();
+    }
+
+    return this.batch;
+  }
+
+  /**
+   * Writes packets straight to the dumper with pcap_dump as the native callback, without calling into Java per packet.
+   * Progress counters are updated in place and may be read concurrently; {@link #breakLoop()} stops recording.
+   */
+  public void recordTo(PcapDumper dumper, int count, RecordProgress progress) throws PcapException {
+    Objects.requireNonNull(dumper, "dumper");
+    int result = PcapNative.recordTo(this.address, dumper.getAddress(), count, progress == null ? 0 : progress.getAddress());
+    if (result != PcapError.ERROR_BREAK.getValue()) {
+      PcapError.throwIfNotSuccess(result);
+    }
+  }
+
+  public void recordTo(PcapDumper dumper, int count) throws PcapException {
+    this.recordTo(dumper, count, null);
+  }
+
+  /**
+   * Only updates the counters of the table from the native callback; no packet is passed to Java.
+   * {@link #breakLoop()} stops aggregation.
+   */
+  public void aggregate(int count, AggregationTable table) throws PcapException {
+    Objects.requireNonNull(table, "table");
+    int result = PcapNative.aggregate(this.address, count, table.getAddress());
+    if (result != PcapError.ERROR_BREAK.getValue()) {
+      PcapError.throwIfNotSuccess(result);
+    }
   }
 
   public PcapRawPacket next() throws PcapException {
@@ -200,6 +347,18 @@ public class PcapHandle {
     return new PcapRawPacket(PcapPacketHeader.read(header[0]), buffer[0]);
   }
 
+  public int nextInto(PcapPacketView view) throws PcapException {
+    Objects.requireNonNull(view, "view");
+    int status = PcapNative.nextInto(this.address, this.nextAddresses);
+    if (status == NEXT_PACKET) {
+      view.wrap(this.nextAddresses[0], this.nextAddresses[1]);
+    } else if (status != NEXT_TIMEOUT && status != NEXT_END_OF_FILE) {
+      PcapError.throwIfNotSuccess(status);
+    }
+
+    return status;
+  }
+
   public void breakLoop() {
     PcapNative.breakLoop(this.address);
   }
@@ -288,6 +447,24 @@ public class PcapHandle {
     return PcapNative.fileno(this.address);
   }
 
+  public int getSelectableFd() {
+    return PcapNative.getSelectableFd(this.address);
+  }
+
+  public int getRequiredSelectTimeout() {
+    return PcapNative.getRequiredSelectTimeout(this.address);
+  }
+
+  public void setFanout(int group, FanoutMode mode, int flags) throws PcapException {
+    if (PcapNative.setFanout(this.address, group, mode.ordinal() | flags) < 0) {
+      throw new PcapException(PcapNative.getErrorBuffer());
+    }
+  }
+
+  public void setFanout(int group, FanoutMode mode) throws PcapException {
+    this.setFanout(group, mode, 0);
+  }
+
   public PcapDumper dumpOpen(String fname) throws PcapException {
     long address = PcapNative.dumpOpen(this.address, fname);
     if (address == 0) {
@@ -31,6 +31,7 @@ public class Ethernet implements EthernetProtocolHeader {
   private byte[] dstAddress;
   private byte[] srcAddress;
   private EthernetProtocol protocol;
+  private int etherType = -1;
 
   @Override
   public void decode(ByteBuffer buffer) throws LayerDecodeException {
@@ -38,12 +39,19 @@ public class Ethernet implements EthernetProtocolHeader {
       throw new LayerDecodeException("Ethernet frame is too small.");
     }
 
-    this.dstAddress = new byte[6];
+    // A pooled layer is decoded many times, so the address arrays of the previous decode are overwritten in place.
+    if (this.dstAddress == null || this.dstAddress.length != 6) {
+      this.dstAddress = new byte[6];
+    }
+
+    if (this.srcAddress == null || this.srcAddress.length != 6) {
+      this.srcAddress = new byte[6];
+    }
+
     buffer.get(this.dstAddress);
-    this.srcAddress = new byte[6];
     buffer.get(this.srcAddress);
-    int protocol = Short.toUnsignedInt(buffer.getShort());
-    this.protocol = EthernetProtocol.getByValue(protocol);
+    this.etherType = Short.toUnsignedInt(buffer.getShort());
+    this.protocol = EthernetProtocol.getByValue(this.etherType);
   }
 
   @Override
@@ -54,7 +62,7 @@ public class Ethernet implements EthernetProtocolHeader {
 
     buffer.put(this.dstAddress);
     buffer.put(this.srcAddress);
-    buffer.putShort((short) this.protocol.getValue());
+    buffer.putShort((short) this.etherType);
   }
 
   @Override
@@ -64,7 +72,7 @@ public class Ethernet implements EthernetProtocolHeader {
 
   @Override
   public Supplier<Layer> nextLayer() {
-    return this.protocol != null ? this.protocol.getLayer() : null;
+    return LayerRegistry.getEtherTypeLayer(this.etherType);
   }
 
   public byte[] getDstAddress() {
@@ -91,6 +99,12 @@ public class Ethernet implements EthernetProtocolHeader {
   @Override
   public void setProtocol(EthernetProtocol protocol) {
     this.protocol = protocol;
+    this.etherType = protocol != null ? protocol.getValue() : -1;
+  }
+
+  @Override
+  public int getEtherType() {
+    return this.etherType;
   }
 
   @Override
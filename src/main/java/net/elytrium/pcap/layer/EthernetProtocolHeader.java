@@ -23,5 +23,13 @@ public interface EthernetProtocolHeader extends Layer {
 
   EthernetProtocol getProtocol();
 
+  /**
+   * Returns the raw EtherType, which is also set for values without an {@link EthernetProtocol} constant.
+   */
+  default int getEtherType() {
+    EthernetProtocol protocol = this.getProtocol();
+    return protocol != null ? protocol.getValue() : -1;
+  }
+
   void setProtocol(EthernetProtocol protocol);
 }
@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2022 - 2023 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.pcap.layer;
+
+import java.nio.ByteBuffer;
+import net.elytrium.pcap.layer.data.LinkType;
+
+/**
+ * Reusable IP 5-tuple extracted directly from the raw frame without decoding {@link Layer}s.
+ * IPv4 addresses are stored in the low 32 bits of {@link #getSrcLow()}/{@link #getDstLow()}.
+ */
+public class FlowKey {
+
+  private int version;
+  private int protocol;
+  private long srcHigh;
+  private long srcLow;
+  private long dstHigh;
+  private long dstLow;
+  private int srcPort;
+  private int dstPort;
+
+  public boolean decode(ByteBuffer buffer, LinkType linkType) {
+    int offset = buffer.position();
+    int limit = buffer.limit();
+    int etherType;
+    if (linkType == null) {
+      return this.reset();
+    }
+
+    switch (linkType) {
+      case ETHERNET:
+        if (limit - offset < 14) {
+          return this.reset();
+        }
+
+        etherType = Short.toUnsignedInt(buffer.getShort(offset + 12));
+        offset += 14;
+        while ((etherType == 0x8100 || etherType == 0x88A8) && limit - offset >= 4) {
+          etherType = Short.toUnsignedInt(buffer.getShort(offset + 2));
+          offset += 4;
+        }
+        break;
+      case LINUX_SLL:
+        if (limit - offset < 16) {
+          return this.reset();
+        }
+
+        etherType = Short.toUnsignedInt(buffer.getShort(offset + 14));
+        offset += 16;
+        break;
+      case RAW:
+        if (limit - offset < 1) {
+          return this.reset();
+        }
+
+        etherType = (buffer.get(offset) & 0xF0) == 0x60 ? 0x86DD : 0x0800;
+        break;
+      default:
+        return this.reset();
+    }
+
+    if (etherType == 0x0800) {
+      return this.decodeIPv4(buffer, offset, limit);
+    } else if (etherType == 0x86DD) {
+      return this.decodeIPv6(buffer, offset, limit);
+    } else {
+      return this.reset();
+    }
+  }
+
+  private boolean decodeIPv4(ByteBuffer buffer, int offset, int limit) {
+    if (limit - offset < 20) {
+      return this.reset();
+    }
+
+    int headerLength = (buffer.get(offset) & 0x0F) * 4;
+    this.version = 4;
+    this.protocol = Byte.toUnsignedInt(buffer.get(offset + 9));
+    this.srcHigh = 0;
+    this.srcLow = Integer.toUnsignedLong(buffer.getInt(offset + 12));
+    this.dstHigh = 0;
+    this.dstLow = Integer.toUnsignedLong(buffer.getInt(offset + 16));
+    boolean firstFragment = (buffer.getShort(offset + 6) & 0x1FFF) == 0;
+    this.decodePorts(buffer, firstFragment ? offset + headerLength : limit, limit);
+    return true;
+  }
+
+  private boolean decodeIPv6(ByteBuffer buffer, int offset, int limit) {
+    if (limit - offset < 40) {
+      return this.reset();
+    }
+
+    int nextHeader = Byte.toUnsignedInt(buffer.get(offset + 6));
+    this.version = 6;
+    this.srcHigh = buffer.getLong(offset + 8);
+    this.srcLow = buffer.getLong(offset + 16);
+    this.dstHigh = buffer.getLong(offset + 24);
+    this.dstLow = buffer.getLong(offset + 32);
+    offset += 40;
+
+    while (limit - offset >= 8) {
+      if (nextHeader == 0 || nextHeader == 43 || nextHeader == 60) {
+        int length = (Byte.toUnsignedInt(buffer.get(offset + 1)) + 1) * 8;
+        nextHeader = Byte.toUnsignedInt(buffer.get(offset));
+        offset += length;
+      } else if (nextHeader == 44) {
+        boolean firstFragment = (buffer.getShort(offset + 2) & 0xFFF8) == 0;
+        nextHeader = Byte.toUnsignedInt(buffer.get(offset));
+        offset = firstFragment ? offset + 8 : limit;
+      } else if (nextHeader == 51) {
+        int length = (Byte.toUnsignedInt(buffer.get(offset + 1)) + 2) * 4;
+        nextHeader = Byte.toUnsignedInt(buffer.get(offset));
+        offset += length;
+      } else {
+        break;
+      }
+    }
+
+    this.protocol = nextHeader;
+    this.decodePorts(buffer, offset, limit);
+    return true;
+  }
+
+  private void decodePorts(ByteBuffer buffer, int offset, int limit) {
+    if ((this.protocol == 6 || this.protocol == 17 || this.protocol == 132) && limit - offset >= 4) {
+      this.srcPort = Short.toUnsignedInt(buffer.getShort(offset));
+      this.dstPort = Short.toUnsignedInt(buffer.getShort(offset + 2));
+    } else {
+      this.srcPort = 0;
+      this.dstPort = 0;
+    }
+  }
+
+  private boolean reset() {
+    this.version = 0;
+    this.protocol = 0;
+    this.srcHigh = 0;
+    this.srcLow = 0;
+    this.dstHigh = 0;
+    this.dstLow = 0;
+    this.srcPort = 0;
+    this.dstPort = 0;
+    return false;
+  }
+
+  public int symmetricHash() {
+    long addresses = mix(this.srcHigh * 31 + this.srcLow) + mix(this.dstHigh * 31 + this.dstLow);
+    long ports = mix(this.srcPort) + mix(this.dstPort);
+    long hash = mix(addresses * 31 + ports) + this.protocol;
+    return (int) (hash ^ (hash >>> 32));
+  }
+
+  private static long mix(long value) {
+    value = (value ^ (value >>> 33)) * 0xFF51AFD7ED558CCDL;
+    value = (value ^ (value >>> 33)) * 0xC4CEB9FE1A85EC53L;
+    return value ^ (value >>> 33);
+  }
+
+  public int getVersion() {
+    return this.version;
+  }
+
+  public int getProtocol() {
+    return this.protocol;
+  }
+
+  public long getSrcHigh() {
+    return this.srcHigh;
+  }
+
+  public long getSrcLow() {
+    return this.srcLow;
+  }
+
+  public long getDstHigh() {
+    return this.dstHigh;
+  }
+
+  public long getDstLow() {
+    return this.dstLow;
+  }
+
+  public int getSrcPort() {
+    return this.srcPort;
+  }
+
+  public int getDstPort() {
+    return this.dstPort;
+  }
+
+  @Override
+  public String toString() {
+    return "FlowKey{"
+        + "version=" + this.version
+        + ", protocol=" + this.protocol
+        + ", srcHigh=" + this.srcHigh
+        + ", srcLow=" + this.srcLow
+        + ", dstHigh=" + this.dstHigh
+        + ", dstLow=" + this.dstLow
+        + ", srcPort=" + this.srcPort
+        + ", dstPort=" + this.dstPort
+        + '}';
+  }
+}
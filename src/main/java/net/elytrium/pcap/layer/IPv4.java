@@ -20,6 +20,7 @@ package net.elytrium.pcap.layer;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Supplier;
 import net.elytrium.pcap.layer.data.IPv4Option;
@@ -41,6 +42,7 @@ public class IPv4 implements IP {
   private int fragOffset;
   private int ttl;
   private IpProtocol protocol;
+  private int protocolId = -1;
   private short checksum;
   private InetAddress srcAddress;
   private InetAddress dstAddress;
@@ -66,8 +68,8 @@ public class IPv4 implements IP {
       this.moreFragment = (flags & 0x04) != 0;
       this.fragOffset = flagsFragOffset & 0x1FFF;
       this.ttl = Byte.toUnsignedInt(buffer.get());
-      int protocolID = Byte.toUnsignedInt(buffer.get());
-      this.protocol = IpProtocol.values()[protocolID];
+      this.protocolId = Byte.toUnsignedInt(buffer.get());
+      this.protocol = IpProtocol.getById(this.protocolId);
       this.checksum = buffer.getShort();
       byte[] address = new byte[4];
       buffer.get(address);
@@ -76,6 +78,7 @@ public class IPv4 implements IP {
       this.dstAddress = InetAddress.getByAddress(address);
 
       if (this.ihl > 5) {
+        this.options = new ArrayList<>();
         for (int i = 0; i < this.ihl - 5; ++i) {
           IPv4OptionType type = IPv4OptionType.getByValue(buffer.get());
           byte length = buffer.get();
@@ -105,7 +108,7 @@ public class IPv4 implements IP {
     flags |= this.moreFragment ? 0x04 : 0;
     buffer.putShort((short) ((flags << 13) | (this.fragOffset & 0x1FFF)));
     buffer.put((byte) this.ttl);
-    buffer.put((byte) this.protocol.ordinal());
+    buffer.put((byte) this.protocolId);
     buffer.putShort(this.checksum);
     buffer.put(this.srcAddress.getAddress());
     buffer.put(this.dstAddress.getAddress());
@@ -126,7 +129,7 @@ public class IPv4 implements IP {
 
   @Override
   public Supplier<Layer> nextLayer() {
-    return this.protocol != null ? this.protocol.getLayer() : null;
+    return LayerRegistry.getIpProtocolLayer(this.protocolId);
   }
 
   @Override
@@ -216,6 +219,14 @@ public class IPv4 implements IP {
 
   public void setProtocol(IpProtocol protocol) {
     this.protocol = protocol;
+    this.protocolId = protocol != null ? protocol.ordinal() : -1;
+  }
+
+  /**
+   * Returns the raw protocol number, which is also set for values without an {@link IpProtocol} constant.
+   */
+  public int getProtocolId() {
+    return this.protocolId;
   }
 
   public short getChecksum() {
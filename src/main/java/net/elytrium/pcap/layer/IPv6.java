@@ -20,7 +20,6 @@ package net.elytrium.pcap.layer;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
-import net.elytrium.pcap.layer.data.IpProtocol;
 import net.elytrium.pcap.layer.exception.LayerDecodeException;
 import net.elytrium.pcap.layer.exception.LayerEncodeException;
 
@@ -48,7 +47,7 @@ public class IPv6 extends IPv6Header implements IP {
       this.trafficClass = (byte) ((versionClassFlow >>> 20) & 0xFF);
       this.flowLabel = versionClassFlow & 0xFFFFF;
       this.payloadLength = Short.toUnsignedInt(buffer.getShort());
-      this.nextHeader = IpProtocol.values()[Byte.toUnsignedInt(buffer.get())];
+      this.readNextHeader(buffer);
       this.hopLimit = Byte.toUnsignedInt(buffer.get());
       byte[] address = new byte[16];
       buffer.get(address);
@@ -71,7 +70,7 @@ public class IPv6 extends IPv6Header implements IP {
     versionClassFlow |= this.flowLabel & 0xFFFFF;
     buffer.putInt(versionClassFlow);
     buffer.putShort((short) this.payloadLength);
-    buffer.put((byte) this.nextHeader.ordinal());
+    buffer.put((byte) this.nextHeaderId);
     buffer.put((byte) this.hopLimit);
     buffer.put(this.srcAddress.getAddress());
     buffer.put(this.dstAddress.getAddress());
@@ -20,7 +20,6 @@ package net.elytrium.pcap.layer;
 import java.nio.ByteBuffer;
 import java.util.LinkedHashMap;
 import java.util.Map;
-import net.elytrium.pcap.layer.data.IpProtocol;
 import net.elytrium.pcap.layer.exception.LayerDecodeException;
 import net.elytrium.pcap.layer.exception.LayerEncodeException;
 
@@ -36,7 +35,7 @@ public class IPv6ExtOptions extends IPv6Header {
     }
 
     int position = buffer.position();
-    this.nextHeader = IpProtocol.values()[Byte.toUnsignedInt(buffer.get())];
+    this.readNextHeader(buffer);
     this.headerExtLength = Byte.toUnsignedInt(buffer.get());
     position += 8 + this.headerExtLength * 8;
     if (buffer.limit() < position) {
@@ -66,7 +65,7 @@ public class IPv6ExtOptions extends IPv6Header {
     }
 
     final int position = buffer.position() + size;
-    buffer.put((byte) this.nextHeader.ordinal());
+    buffer.put((byte) this.nextHeaderId);
     buffer.put((byte) this.headerExtLength);
     this.options.forEach((id, value) -> {
       buffer.put(id.byteValue());
@@ -18,7 +18,6 @@
 package net.elytrium.pcap.layer;
 
 import java.nio.ByteBuffer;
-import net.elytrium.pcap.layer.data.IpProtocol;
 import net.elytrium.pcap.layer.exception.LayerDecodeException;
 import net.elytrium.pcap.layer.exception.LayerEncodeException;
 
@@ -36,7 +35,7 @@ public class IPv6Fragment extends IPv6Header {
       throw new LayerDecodeException("Fragment extension header is too small.");
     }
 
-    this.nextHeader = IpProtocol.values()[Byte.toUnsignedInt(buffer.get())];
+    this.readNextHeader(buffer);
     buffer.get();
     short offsetMore = buffer.getShort();
     this.fragmentOffset = (short) ((offsetMore >>> 3) & 0x1FFF);
@@ -50,7 +49,7 @@ public class IPv6Fragment extends IPv6Header {
       throw new LayerEncodeException("ByteBuffer is too small.");
     }
 
-    buffer.put((byte) this.nextHeader.ordinal());
+    buffer.put((byte) this.nextHeaderId);
     buffer.put((byte) 0);
     short offsetMore = (short) (this.fragmentOffset << 3);
     offsetMore |= this.hasMore ? 1 : 0;
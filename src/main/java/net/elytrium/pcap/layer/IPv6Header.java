@@ -17,12 +17,14 @@
 
 package net.elytrium.pcap.layer;
 
+import java.nio.ByteBuffer;
 import java.util.function.Supplier;
 import net.elytrium.pcap.layer.data.IpProtocol;
 
 public abstract class IPv6Header implements Layer {
 
   protected IpProtocol nextHeader;
+  protected int nextHeaderId = -1;
 
   public IpProtocol getNextHeader() {
     return this.nextHeader;
@@ -30,11 +32,24 @@ public abstract class IPv6Header implements Layer {
 
   public void setNextHeader(IpProtocol nextHeader) {
     this.nextHeader = nextHeader;
+    this.nextHeaderId = nextHeader != null ? nextHeader.ordinal() : -1;
+  }
+
+  /**
+   * Returns the raw next header number, which is also set for values without an {@link IpProtocol} constant.
+   */
+  public int getNextHeaderId() {
+    return this.nextHeaderId;
+  }
+
+  protected void readNextHeader(ByteBuffer buffer) {
+    this.nextHeaderId = Byte.toUnsignedInt(buffer.get());
+    this.nextHeader = IpProtocol.getById(this.nextHeaderId);
   }
 
   @Override
   public Supplier<Layer> nextLayer() {
-    return this.nextHeader != null ? this.nextHeader.getLayer() : null;
+    return LayerRegistry.getIpProtocolLayer(this.nextHeaderId);
   }
 
   @Override
@@ -19,7 +19,6 @@ package net.elytrium.pcap.layer;
 
 import java.nio.ByteBuffer;
 import java.util.Arrays;
-import net.elytrium.pcap.layer.data.IpProtocol;
 import net.elytrium.pcap.layer.exception.LayerDecodeException;
 import net.elytrium.pcap.layer.exception.LayerEncodeException;
 
@@ -36,7 +35,7 @@ public class IPv6Routing extends IPv6Header {
       throw new LayerDecodeException("Routing extension header is too small.");
     }
 
-    this.nextHeader = IpProtocol.values()[Byte.toUnsignedInt(buffer.get())];
+    this.readNextHeader(buffer);
     this.headerExtLength = Byte.toUnsignedInt(buffer.get());
     this.routingType = Byte.toUnsignedInt(buffer.get());
     this.segmentsLeft = Byte.toUnsignedInt(buffer.get());
@@ -52,7 +51,7 @@ public class IPv6Routing extends IPv6Header {
     }
 
     int position = buffer.position() + size;
-    buffer.put((byte) this.nextHeader.ordinal());
+    buffer.put((byte) this.nextHeaderId);
     buffer.put((byte) this.headerExtLength);
     buffer.put((byte) this.routingType);
     buffer.put((byte) this.segmentsLeft);
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2022 - 2023 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.pcap.layer;
+
+import java.util.function.Supplier;
+import net.elytrium.pcap.layer.data.EthernetProtocol;
+import net.elytrium.pcap.layer.data.IpProtocol;
+import net.elytrium.pcap.layer.data.LinkType;
+
+/**
+ * Decoder tables indexed by raw EtherType, IP protocol number and link type value. The tables are filled from the
+ * protocol enums and can be extended with the register methods. Registration is not synchronized, so it should happen
+ * at startup, before packets are decoded.
+ */
+public class LayerRegistry {
+
+  private static final Supplier<Layer>[] ETHER_TYPES = newTable(65536);
+  private static final Supplier<Layer>[] IP_PROTOCOLS = newTable(256);
+  private static final Supplier<Layer>[] LINK_TYPES = newTable(65536);
+
+  static {
+    for (EthernetProtocol protocol : EthernetProtocol.values()) {
+      ETHER_TYPES[protocol.getValue()] = protocol.getLayer();
+    }
+
+    for (IpProtocol protocol : IpProtocol.values()) {
+      IP_PROTOCOLS[protocol.ordinal()] = protocol.getLayer();
+    }
+
+    for (LinkType type : LinkType.values()) {
+      LINK_TYPES[type.getValue()] = type.getLayer();
+    }
+  }
+
+  public static void registerEtherType(int etherType, Supplier<Layer> layer) {
+    register(ETHER_TYPES, etherType, layer);
+  }
+
+  public static void registerIpProtocol(int protocol, Supplier<Layer> layer) {
+    register(IP_PROTOCOLS, protocol, layer);
+  }
+
+  public static void registerLinkType(int linkType, Supplier<Layer> layer) {
+    register(LINK_TYPES, linkType, layer);
+  }
+
+  public static Supplier<Layer> getEtherTypeLayer(int etherType) {
+    return lookup(ETHER_TYPES, etherType);
+  }
+
+  public static Supplier<Layer> getIpProtocolLayer(int protocol) {
+    return lookup(IP_PROTOCOLS, protocol);
+  }
+
+  public static Supplier<Layer> getLinkTypeLayer(int linkType) {
+    return lookup(LINK_TYPES, linkType);
+  }
+
+  private static void register(Supplier<Layer>[] table, int value, Supplier<Layer> layer) {
+    if (value < 0 || value >= table.length) {
+      throw new IllegalArgumentException("Value " + value + " is out of range.");
+    }
+
+    table[value] = layer;
+  }
+
+  private static Supplier<Layer> lookup(Supplier<Layer>[] table, int value) {
+    return value >= 0 && value < table.length ? table[value] : null;
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static Supplier<Layer>[] newTable(int size) {
+    return (Supplier<Layer>[]) new Supplier[size];
+  }
+}
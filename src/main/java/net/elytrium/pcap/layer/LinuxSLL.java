@@ -43,6 +43,7 @@ public class LinuxSLL implements EthernetProtocolHeader {
   private int addressLength;
   private byte[] address;
   private EthernetProtocol protocol;
+  private int etherType = -1;
 
   @Override
   public void decode(ByteBuffer buffer) throws LayerDecodeException {
@@ -55,8 +56,8 @@ public class LinuxSLL implements EthernetProtocolHeader {
     this.addressLength = buffer.getShort();
     this.address = new byte[8];
     buffer.get(this.address);
-    int protocol = Short.toUnsignedInt(buffer.getShort());
-    this.protocol = EthernetProtocol.getByValue(protocol);
+    this.etherType = Short.toUnsignedInt(buffer.getShort());
+    this.protocol = EthernetProtocol.getByValue(this.etherType);
   }
 
   @Override
@@ -69,7 +70,7 @@ public class LinuxSLL implements EthernetProtocolHeader {
     buffer.putShort((short) this.addressType);
     buffer.putShort((short) this.addressLength);
     buffer.put(this.address, 0, 8);
-    buffer.putShort((short) this.protocol.getValue());
+    buffer.putShort((short) this.etherType);
   }
 
   @Override
@@ -79,7 +80,7 @@ public class LinuxSLL implements EthernetProtocolHeader {
 
   @Override
   public Supplier<Layer> nextLayer() {
-    return this.protocol != null ? this.protocol.getLayer() : null;
+    return LayerRegistry.getEtherTypeLayer(this.etherType);
   }
 
   public PacketType getPacketType() {
@@ -122,6 +123,12 @@ public class LinuxSLL implements EthernetProtocolHeader {
   @Override
   public void setProtocol(EthernetProtocol protocol) {
     this.protocol = protocol;
+    this.etherType = protocol != null ? protocol.getValue() : -1;
+  }
+
+  @Override
+  public int getEtherType() {
+    return this.etherType;
   }
 
   @Override
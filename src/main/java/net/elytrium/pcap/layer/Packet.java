@@ -19,7 +19,9 @@ package net.elytrium.pcap.layer;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Supplier;
@@ -27,10 +29,29 @@ import net.elytrium.pcap.layer.data.LinkType;
 import net.elytrium.pcap.layer.exception.LayerDecodeException;
 import net.elytrium.pcap.layer.exception.LayerEncodeException;
 
+/**
+ * Decoded packet. {@link #decode(ByteBuffer, LinkType)} decodes every layer up front and copies the payload, while
+ * {@link #decodeLazy(ByteBuffer, LinkType)} only remembers the buffer and decodes further layers when they are first
+ * asked for, leaving the payload as a slice of the buffer. In lazy mode the buffer must stay unchanged while the packet
+ * is in use, and the getters that need every layer throw {@link IllegalStateException} if decoding fails.
+ *
+ * <p>Decoded layers, the list returned by {@link #getLayers()} and the map returned by {@link #getLayerMap()} are
+ * pooled per packet and reused by the next decode, so a packet should be reused on one thread and layers from a
+ * previous decode must not be kept. The payload of an eager decode is a fresh copy that stays valid, while the lazy
+ * payload is only valid as long as the decoded buffer is.
+ */
 public class Packet {
 
-  private final Map<Class<? extends Layer>, List<Layer>> layerMap = new HashMap<>();
+  private final Map<Supplier<Layer>, LayerPool> poolMap = new IdentityHashMap<>();
+  private final List<LayerPool> pools = new ArrayList<>();
   private final List<Layer> layers = new ArrayList<>();
+  private final Map<Class<? extends Layer>, List<Layer>> layerMap = new HashMap<>();
+  private final Map<Class<? extends Layer>, List<Layer>> layerLists = new HashMap<>();
+  private int indexed;
+  private int[] offsets = new int[8];
+  private ByteBuffer source;
+  private int sourceStart;
+  private Supplier<Layer> pending;
   private ByteBuffer data;
 
   public Packet(List<Layer> layers, ByteBuffer data) {
@@ -42,15 +63,15 @@ public class Packet {
   }
 
   public void decode(ByteBuffer buffer, Supplier<Layer> first) throws LayerDecodeException {
-    this.layerMap.clear();
-    this.layers.clear();
+    this.reset();
 
+    int start = buffer.position();
     Supplier<Layer> supplier = first;
     while (supplier != null) {
-      Layer layer = supplier.get();
-      layer.decode(buffer);
-      this.addLayer(layer);
-      supplier = layer.nextLayer();
+      Layer layer = this.obtain(supplier);
+      int offset = buffer.position() - start;
+      supplier = decodeLayer(layer, buffer);
+      this.addLayer(layer, offset);
     }
 
     this.data = ByteBuffer.allocate(buffer.remaining());
@@ -59,10 +80,154 @@ public class Packet {
   }
 
   public void decode(ByteBuffer buffer, LinkType linkType) throws LayerDecodeException {
-    this.decode(buffer, linkType.getLayer());
+    this.decode(buffer, LayerRegistry.getLinkTypeLayer(linkType.getValue()));
+  }
+
+  public void decodeLazy(ByteBuffer buffer, Supplier<Layer> first) {
+    this.reset();
+    this.source = buffer.duplicate();
+    this.sourceStart = buffer.position();
+    this.pending = first;
+    if (first == null) {
+      this.data = this.source.slice();
+    }
+  }
+
+  public void decodeLazy(ByteBuffer buffer, LinkType linkType) {
+    this.decodeLazy(buffer, LayerRegistry.getLinkTypeLayer(linkType.getValue()));
+  }
+
+  /**
+   * Returns the first layer of the class, decoding lazily only as far as needed to find it.
+   */
+  @SuppressWarnings("unchecked")
+  public <T extends Layer> T getLayer(Class<T> cls) throws LayerDecodeException {
+    for (int i = 0; i < this.layers.size(); i++) {
+      Layer layer = this.layers.get(i);
+      if (layer.getClass() == cls) {
+        return (T) layer;
+      }
+    }
+
+    while (this.decodeNext()) {
+      Layer layer = this.layers.get(this.layers.size() - 1);
+      if (layer.getClass() == cls) {
+        return (T) layer;
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Returns the layer at the index, decoding lazily only as far as needed, or null if the packet has fewer layers.
+   */
+  public Layer getLayer(int index) throws LayerDecodeException {
+    while (this.layers.size() <= index) {
+      if (!this.decodeNext()) {
+        return null;
+      }
+    }
+
+    return this.layers.get(index);
+  }
+
+  /**
+   * Returns the offset of the layer header from the start of the decoded buffer, or -1 for layers added by hand.
+   */
+  public int getLayerOffset(int index) {
+    return this.offsets[index];
+  }
+
+  public void decodeAll() throws LayerDecodeException {
+    boolean decoded = true;
+    while (decoded) {
+      decoded = this.decodeNext();
+    }
+  }
+
+  private boolean decodeNext() throws LayerDecodeException {
+    Supplier<Layer> supplier = this.pending;
+    if (supplier == null) {
+      return false;
+    }
+
+    this.pending = null;
+    Layer layer = this.obtain(supplier);
+    int offset = this.source.position() - this.sourceStart;
+    Supplier<Layer> next = decodeLayer(layer, this.source);
+    this.addLayer(layer, offset);
+    this.pending = next;
+    if (this.pending == null) {
+      this.data = this.source.slice();
+    }
+
+    return true;
+  }
+
+  /**
+   * Decodes the layer and returns the next one. Ethernet, IPv4 and TCP are called through their exact classes, so these
+   * call sites stay monomorphic and can be inlined, while the rest go through the interface.
+   */
+  private static Supplier<Layer> decodeLayer(Layer layer, ByteBuffer buffer) throws LayerDecodeException {
+    Class<? extends Layer> cls = layer.getClass();
+    if (cls == Ethernet.class) {
+      Ethernet ethernet = (Ethernet) layer;
+      ethernet.decode(buffer);
+      return ethernet.nextLayer();
+    } else if (cls == IPv4.class) {
+      IPv4 ipv4 = (IPv4) layer;
+      ipv4.decode(buffer);
+      return ipv4.nextLayer();
+    } else if (cls == TCP.class) {
+      TCP tcp = (TCP) layer;
+      tcp.decode(buffer);
+      return tcp.nextLayer();
+    } else {
+      layer.decode(buffer);
+      return layer.nextLayer();
+    }
+  }
+
+  private Layer obtain(Supplier<Layer> supplier) {
+    LayerPool pool = this.poolMap.get(supplier);
+    if (pool == null) {
+      pool = new LayerPool();
+      this.poolMap.put(supplier, pool);
+      this.pools.add(pool);
+    }
+
+    if (pool.used == pool.layers.size()) {
+      pool.layers.add(supplier.get());
+    }
+
+    return pool.layers.get(pool.used++);
+  }
+
+  private void complete() {
+    try {
+      this.decodeAll();
+    } catch (LayerDecodeException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private void reset() {
+    for (int i = 0; i < this.pools.size(); i++) {
+      this.pools.get(i).used = 0;
+    }
+
+    this.layerMap.values().forEach(List::clear);
+    this.layerMap.clear();
+    this.indexed = 0;
+    this.layers.clear();
+    this.source = null;
+    this.pending = null;
+    this.data = null;
   }
 
   public ByteBuffer encode(ByteBuffer buffer) throws LayerEncodeException {
+    this.complete();
     for (Layer layer : this.layers) {
       layer.encode(buffer);
     }
@@ -79,31 +244,60 @@ public class Packet {
   }
 
   public int getSize() {
+    this.complete();
     return this.data.remaining() + this.layers.stream().mapToInt(Layer::getSize).sum();
   }
 
   public void addLayer(Layer layer) {
-    this.layerMap.computeIfAbsent(layer.getClass(), k -> new ArrayList<>()).add(layer);
+    this.addLayer(layer, -1);
+  }
+
+  private void addLayer(Layer layer, int offset) {
+    int index = this.layers.size();
+    if (index == this.offsets.length) {
+      this.offsets = Arrays.copyOf(this.offsets, index * 2);
+    }
+
+    this.offsets[index] = offset;
     this.layers.add(layer);
   }
 
   public List<Layer> getLayers() {
+    this.complete();
     return this.layers;
   }
 
   public List<Layer> getLayers(Class<? extends Layer> cls) {
-    return this.layerMap.get(cls);
+    return this.getLayerMap().get(cls);
   }
 
+  /**
+   * Returns the layers grouped by class. The map and its lists are owned by the packet and refilled after each decode,
+   * only indexing the layers added since the last call.
+   */
   public Map<Class<? extends Layer>, List<Layer>> getLayerMap() {
+    this.complete();
+    for (; this.indexed < this.layers.size(); this.indexed++) {
+      Layer layer = this.layers.get(this.indexed);
+      List<Layer> list = this.layerMap.get(layer.getClass());
+      if (list == null) {
+        list = this.layerLists.computeIfAbsent(layer.getClass(), cls -> new ArrayList<>());
+        this.layerMap.put(layer.getClass(), list);
+      }
+
+      list.add(layer);
+    }
+
     return this.layerMap;
   }
 
   public ByteBuffer getData() {
+    this.complete();
     return this.data;
   }
 
   public void setData(ByteBuffer data) {
+    this.complete();
     this.data = data;
   }
 
@@ -114,4 +308,10 @@ public class Packet {
         + ", data=" + this.data
         + '}';
   }
+
+  private static class LayerPool {
+
+    private final List<Layer> layers = new ArrayList<>();
+    private int used;
+  }
 }
@@ -17,8 +17,6 @@
 
 package net.elytrium.pcap.layer.data;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.function.Supplier;
 import net.elytrium.pcap.layer.IPv4;
 import net.elytrium.pcap.layer.IPv6;
@@ -100,11 +98,11 @@ public enum EthernetProtocol {
   IFE(0xED3E),
   AF_IUCV(0xFBFB);
 
-  private static final Map<Integer, EthernetProtocol> REGISTRY = new HashMap<>();
+  private static final EthernetProtocol[] REGISTRY = new EthernetProtocol[65536];
 
   static {
     for (EthernetProtocol protocol : values()) {
-      REGISTRY.put(protocol.getValue(), protocol);
+      REGISTRY[protocol.getValue()] = protocol;
     }
   }
 
@@ -130,6 +128,6 @@ public enum EthernetProtocol {
   }
 
   public static EthernetProtocol getByValue(int value) {
-    return REGISTRY.get(value);
+    return value >= 0 && value < REGISTRY.length ? REGISTRY[value] : null;
   }
 }
@@ -173,6 +173,8 @@ public enum IpProtocol {
   WESP,
   ROHC;
 
+  private static final IpProtocol[] VALUES = values();
+
   private final Supplier<Layer> layer;
 
   IpProtocol(Supplier<Layer> layer) {
@@ -186,4 +188,8 @@ public enum IpProtocol {
   public Supplier<Layer> getLayer() {
     return this.layer;
   }
+
+  public static IpProtocol getById(int id) {
+    return id >= 0 && id < VALUES.length ? VALUES[id] : null;
+  }
 }
@@ -17,8 +17,6 @@
 
 package net.elytrium.pcap.layer.data;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.function.Supplier;
 import net.elytrium.pcap.layer.Ethernet;
 import net.elytrium.pcap.layer.IPv4;
@@ -164,11 +162,17 @@ public enum LinkType {
   USB_2_0_HIGH_SPEED(295),
   AUERSWALD_LOG(296);
 
-  private static final Map<Integer, LinkType> REGISTRY = new HashMap<>();
+  private static final LinkType[] REGISTRY;
 
   static {
+    int max = 0;
     for (LinkType type : values()) {
-      REGISTRY.put(type.getValue(), type);
+      max = Math.max(max, type.getValue());
+    }
+
+    REGISTRY = new LinkType[max + 1];
+    for (LinkType type : values()) {
+      REGISTRY[type.getValue()] = type;
     }
   }
 
@@ -194,6 +198,6 @@ public enum LinkType {
   }
 
   public static LinkType getByValue(int value) {
-    return REGISTRY.get(value);
+    return value >= 0 && value < REGISTRY.length ? REGISTRY[value] : null;
   }
 }
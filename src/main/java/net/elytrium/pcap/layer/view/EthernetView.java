@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2022 - 2023 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.pcap.layer.view;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reusable view of an Ethernet header (including 802.1Q/802.1ad tags) that reads fields straight from the buffer.
+ * MAC addresses are returned in the low 48 bits of a long.
+ */
+public class EthernetView {
+
+  private static final int SIZE = 14;
+  private static final int VLAN_TAG_SIZE = 4;
+
+  private ByteBuffer buffer;
+  private int offset;
+  private int tags;
+
+  public boolean wrap(ByteBuffer buffer, int offset) {
+    this.buffer = buffer;
+    this.offset = offset;
+    this.tags = 0;
+    if (buffer.limit() - offset < SIZE) {
+      return false;
+    }
+
+    int typeOffset = offset + 12;
+    int etherType = Short.toUnsignedInt(buffer.getShort(typeOffset));
+    while ((etherType == 0x8100 || etherType == 0x88A8) && buffer.limit() - typeOffset >= VLAN_TAG_SIZE + 2) {
+      typeOffset += VLAN_TAG_SIZE;
+      etherType = Short.toUnsignedInt(buffer.getShort(typeOffset));
+      this.tags++;
+    }
+
+    return true;
+  }
+
+  public int getOffset() {
+    return this.offset;
+  }
+
+  public long getDstAddress() {
+    return readMac(this.buffer, this.offset);
+  }
+
+  public long getSrcAddress() {
+    return readMac(this.buffer, this.offset + 6);
+  }
+
+  public int getVlanTags() {
+    return this.tags;
+  }
+
+  /**
+   * Returns the VLAN id of the outermost tag, or -1 for untagged frames.
+   */
+  public int getVlanId() {
+    return this.tags == 0 ? -1 : this.buffer.getShort(this.offset + 14) & 0x0FFF;
+  }
+
+  /**
+   * Returns the EtherType of the payload, after any VLAN tags.
+   */
+  public int getEtherType() {
+    return Short.toUnsignedInt(this.buffer.getShort(this.offset + 12 + this.tags * VLAN_TAG_SIZE));
+  }
+
+  public int getSize() {
+    return SIZE + this.tags * VLAN_TAG_SIZE;
+  }
+
+  public int getPayloadOffset() {
+    return this.offset + this.getSize();
+  }
+
+  private static long readMac(ByteBuffer buffer, int offset) {
+    return Integer.toUnsignedLong(buffer.getInt(offset)) << 16 | Short.toUnsignedInt(buffer.getShort(offset + 4));
+  }
+
+  @Override
+  public String toString() {
+    return "EthernetView{"
+        + "dstAddress=" + Long.toHexString(this.getDstAddress())
+        + ", srcAddress=" + Long.toHexString(this.getSrcAddress())
+        + ", etherType=" + this.getEtherType()
+        + '}';
+  }
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright (C) 2022 - 2023 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.pcap.layer.view;
+
+import java.nio.ByteBuffer;
+import net.elytrium.pcap.layer.data.LinkType;
+
+/**
+ * Reads a fixed set of {@link PacketField}s into a long array in one pass over the packet, without building layers.
+ * Headers are only parsed as deep as the requested fields need. An extractor keeps reusable views, so it must not be
+ * shared between threads.
+ */
+public class FieldExtractor {
+
+  private static final int MAX_FIELDS = 64;
+  private static final int LINK_ETHERNET = 0;
+  private static final int LINK_SLL = 1;
+  private static final int LINK_IP = 2;
+  private static final int LINK_NULL = 3;
+
+  private final EthernetView ethernet = new EthernetView();
+  private final IPv4View ipv4 = new IPv4View();
+  private final IPv6View ipv6 = new IPv6View();
+  private final TCPView tcp = new TCPView();
+  private final UDPView udp = new UDPView();
+  private final PacketField[] fields;
+  private final int link;
+  private final int depth;
+  private int headers;
+  private int start;
+  private int etherType;
+  private int ipVersion;
+  private int ipProtocol;
+  private int ipEnd;
+  private int transportOffset;
+  private int payloadOffset;
+
+  public FieldExtractor(LinkType linkType, PacketField... fields) {
+    if (fields.length > MAX_FIELDS) {
+      throw new IllegalArgumentException("At most " + MAX_FIELDS + " fields are supported.");
+    }
+
+    switch (linkType) {
+      case ETHERNET:
+        this.link = LINK_ETHERNET;
+        break;
+      case LINUX_SLL:
+        this.link = LINK_SLL;
+        break;
+      case RAW:
+      case IPV4:
+      case IPV6:
+        this.link = LINK_IP;
+        break;
+      case NULL:
+      case LOOP:
+        this.link = LINK_NULL;
+        break;
+      default:
+        throw new IllegalArgumentException("Unsupported link type " + linkType);
+    }
+
+    int depth = 0;
+    for (PacketField field : fields) {
+      if (field.getHeader() >= PacketField.TRANSPORT) {
+        depth = 2;
+      } else if (field.getHeader() >= PacketField.IP) {
+        depth = Math.max(depth, 1);
+      }
+    }
+
+    this.fields = fields.clone();
+    this.depth = depth;
+  }
+
+  /**
+   * Creates an extractor from field names such as {@code ipv4.src} or {@code tcp.dstPort}, see {@link PacketField}.
+   */
+  public static FieldExtractor compile(LinkType linkType, String... names) {
+    PacketField[] fields = new PacketField[names.length];
+    for (int i = 0; i < names.length; i++) {
+      fields[i] = PacketField.getByName(names[i]);
+      if (fields[i] == null) {
+        throw new IllegalArgumentException("Unknown field " + names[i]);
+      }
+    }
+
+    return new FieldExtractor(linkType, fields);
+  }
+
+  /**
+   * Reads the fields of the packet between the buffer position and limit into the array, in declaration order. Fields
+   * whose header is missing or truncated are set to -1. Offsets are relative to the buffer position.
+   *
+   * @return a mask with bit i set if field i was present
+   */
+  public long extract(ByteBuffer buffer, long[] values) {
+    this.headers = 0;
+    this.start = buffer.position();
+    int offset = this.decodeLink(buffer);
+    if (offset >= 0 && this.depth > 0) {
+      int protocol = this.decodeNetwork(buffer, offset);
+      if (protocol >= 0 && this.depth > 1) {
+        this.decodeTransport(buffer, protocol);
+      }
+    }
+
+    long mask = 0;
+    for (int i = 0; i < this.fields.length; i++) {
+      PacketField field = this.fields[i];
+      if ((this.headers & (1 << field.getHeader())) != 0) {
+        values[i] = this.read(field);
+        mask |= 1L << i;
+      } else {
+        values[i] = -1;
+      }
+    }
+
+    return mask;
+  }
+
+  public int getFieldCount() {
+    return this.fields.length;
+  }
+
+  public PacketField getField(int index) {
+    return this.fields[index];
+  }
+
+  private int decodeLink(ByteBuffer buffer) {
+    switch (this.link) {
+      case LINK_ETHERNET:
+        if (!this.ethernet.wrap(buffer, this.start)) {
+          return -1;
+        }
+
+        this.headers |= 1 << PacketField.ETHERNET | 1 << PacketField.LINK;
+        this.etherType = this.ethernet.getEtherType();
+        return this.ethernet.getPayloadOffset();
+      case LINK_SLL:
+        if (buffer.limit() - this.start < 16) {
+          return -1;
+        }
+
+        this.headers |= 1 << PacketField.LINK;
+        this.etherType = Short.toUnsignedInt(buffer.getShort(this.start + 14));
+        return this.start + 16;
+      case LINK_NULL:
+        this.etherType = -1;
+        return buffer.limit() - this.start < 4 ? -1 : this.start + 4;
+      default:
+        this.etherType = -1;
+        return this.start;
+    }
+  }
+
+  private int decodeNetwork(ByteBuffer buffer, int offset) {
+    int version;
+    if (this.etherType == 0x0800) {
+      version = 4;
+    } else if (this.etherType == 0x86DD) {
+      version = 6;
+    } else if (this.etherType == -1 && offset < buffer.limit()) {
+      version = (buffer.get(offset) & 0xF0) >> 4;
+    } else {
+      return -1;
+    }
+
+    boolean fragment;
+    if (version == 4 && this.ipv4.wrap(buffer, offset)) {
+      this.headers |= 1 << PacketField.IP | 1 << PacketField.IPV4;
+      this.ipProtocol = this.ipv4.getProtocol();
+      this.ipEnd = this.ipv4.getLength() == 0 ? buffer.limit() : offset + this.ipv4.getLength();
+      this.transportOffset = this.ipv4.getPayloadOffset();
+      fragment = this.ipv4.getFragmentOffset() != 0;
+    } else if (version == 6 && this.ipv6.wrap(buffer, offset)) {
+      this.headers |= 1 << PacketField.IP | 1 << PacketField.IPV6;
+      this.ipProtocol = this.ipv6.getUpperProtocol();
+      this.ipEnd = this.ipv6.getPayloadLength() == 0 ? buffer.limit() : offset + this.ipv6.getSize() + this.ipv6.getPayloadLength();
+      this.transportOffset = this.ipv6.getPayloadOffset();
+      fragment = this.ipv6.isFragment();
+    } else {
+      return -1;
+    }
+
+    this.ipVersion = version;
+    this.ipEnd = Math.min(this.ipEnd, buffer.limit());
+    return fragment ? -1 : this.ipProtocol;
+  }
+
+  private void decodeTransport(ByteBuffer buffer, int protocol) {
+    if (protocol == 6 && this.tcp.wrap(buffer, this.transportOffset)) {
+      this.headers |= 1 << PacketField.TRANSPORT | 1 << PacketField.TCP;
+      this.payloadOffset = this.tcp.getPayloadOffset();
+    } else if (protocol == 17 && this.udp.wrap(buffer, this.transportOffset)) {
+      this.headers |= 1 << PacketField.TRANSPORT | 1 << PacketField.UDP;
+      this.payloadOffset = this.udp.getPayloadOffset();
+    }
+  }
+
+  private long read(PacketField field) {
+    switch (field) {
+      case ETH_SRC:
+        return this.ethernet.getSrcAddress();
+      case ETH_DST:
+        return this.ethernet.getDstAddress();
+      case ETH_TYPE:
+        return this.etherType;
+      case ETH_VLAN:
+        return this.ethernet.getVlanId();
+      case IP_VERSION:
+        return this.ipVersion;
+      case IP_PROTOCOL:
+        return this.ipProtocol;
+      case IPV4_SRC:
+        return Integer.toUnsignedLong(this.ipv4.getSrcAddress());
+      case IPV4_DST:
+        return Integer.toUnsignedLong(this.ipv4.getDstAddress());
+      case IPV4_TOS:
+        return this.ipv4.getTos();
+      case IPV4_LENGTH:
+        return this.ipv4.getLength();
+      case IPV4_ID:
+        return this.ipv4.getId();
+      case IPV4_FRAG_OFFSET:
+        return this.ipv4.getFragmentOffset();
+      case IPV4_TTL:
+        return this.ipv4.getTtl();
+      case IPV6_SRC_HIGH:
+        return this.ipv6.getSrcHigh();
+      case IPV6_SRC_LOW:
+        return this.ipv6.getSrcLow();
+      case IPV6_DST_HIGH:
+        return this.ipv6.getDstHigh();
+      case IPV6_DST_LOW:
+        return this.ipv6.getDstLow();
+      case IPV6_FLOW_LABEL:
+        return this.ipv6.getFlowLabel();
+      case IPV6_PAYLOAD_LENGTH:
+        return this.ipv6.getPayloadLength();
+      case IPV6_HOP_LIMIT:
+        return this.ipv6.getHopLimit();
+      case TCP_SRC_PORT:
+        return this.tcp.getSrcPort();
+      case TCP_DST_PORT:
+        return this.tcp.getDstPort();
+      case TCP_SEQUENCE:
+        return this.tcp.getSequence();
+      case TCP_ACK_SN:
+        return this.tcp.getAckSn();
+      case TCP_FLAGS:
+        return this.tcp.getFlags();
+      case TCP_WINDOW_SIZE:
+        return this.tcp.getWindowSize();
+      case UDP_SRC_PORT:
+        return this.udp.getSrcPort();
+      case UDP_DST_PORT:
+        return this.udp.getDstPort();
+      case UDP_LENGTH:
+        return this.udp.getLength();
+      case PAYLOAD_OFFSET:
+        return this.payloadOffset - this.start;
+      case PAYLOAD_LENGTH:
+        return Math.max(0, this.ipEnd - this.payloadOffset);
+      default:
+        throw new IllegalStateException("Unexpected field " + field);
+    }
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2022 - 2023 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.pcap.layer.view;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reusable view of an IPv4 header that reads fields straight from the buffer. Addresses are returned as ints.
+ */
+public class IPv4View {
+
+  private static final int MIN_SIZE = 20;
+
+  private ByteBuffer buffer;
+  private int offset;
+
+  public boolean wrap(ByteBuffer buffer, int offset) {
+    this.buffer = buffer;
+    this.offset = offset;
+    if (buffer.limit() - offset < MIN_SIZE || (buffer.get(offset) & 0xF0) != 0x40) {
+      return false;
+    }
+
+    int size = (buffer.get(offset) & 0x0F) * 4;
+    return size >= MIN_SIZE && buffer.limit() - offset >= size;
+  }
+
+  public int getOffset() {
+    return this.offset;
+  }
+
+  public int getVersion() {
+    return (this.buffer.get(this.offset) & 0xF0) >> 4;
+  }
+
+  public int getIhl() {
+    return this.buffer.get(this.offset) & 0x0F;
+  }
+
+  public int getTos() {
+    return this.buffer.get(this.offset + 1) & 0xFF;
+  }
+
+  public int getLength() {
+    return Short.toUnsignedInt(this.buffer.getShort(this.offset + 2));
+  }
+
+  public int getId() {
+    return Short.toUnsignedInt(this.buffer.getShort(this.offset + 4));
+  }
+
+  public boolean isNoFragment() {
+    return (this.buffer.get(this.offset + 6) & 0x40) != 0;
+  }
+
+  public boolean isMoreFragment() {
+    return (this.buffer.get(this.offset + 6) & 0x20) != 0;
+  }
+
+  public int getFragmentOffset() {
+    return this.buffer.getShort(this.offset + 6) & 0x1FFF;
+  }
+
+  public int getTtl() {
+    return this.buffer.get(this.offset + 8) & 0xFF;
+  }
+
+  public int getProtocol() {
+    return this.buffer.get(this.offset + 9) & 0xFF;
+  }
+
+  public short getChecksum() {
+    return this.buffer.getShort(this.offset + 10);
+  }
+
+  public int getSrcAddress() {
+    return this.buffer.getInt(this.offset + 12);
+  }
+
+  public int getDstAddress() {
+    return this.buffer.getInt(this.offset + 16);
+  }
+
+  public int getSize() {
+    return this.getIhl() * 4;
+  }
+
+  public int getPayloadOffset() {
+    return this.offset + this.getSize();
+  }
+
+  @Override
+  public String toString() {
+    return "IPv4View{"
+        + "protocol=" + this.getProtocol()
+        + ", srcAddress=" + Integer.toUnsignedString(this.getSrcAddress())
+        + ", dstAddress=" + Integer.toUnsignedString(this.getDstAddress())
+        + ", length=" + this.getLength()
+        + '}';
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2022 - 2023 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.pcap.layer.view;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reusable view of an IPv6 header that reads fields straight from the buffer. Addresses are returned as two longs.
+ * {@link #getUpperProtocol()} and {@link #getPayloadOffset()} skip the extension header chain.
+ */
+public class IPv6View {
+
+  private static final int SIZE = 40;
+  private static final int MAX_EXTENSIONS = 8;
+
+  private ByteBuffer buffer;
+  private int offset;
+  private int upperProtocol = -1;
+  private int upperOffset;
+  private boolean fragment;
+
+  public boolean wrap(ByteBuffer buffer, int offset) {
+    this.buffer = buffer;
+    this.offset = offset;
+    this.upperProtocol = -1;
+    return buffer.limit() - offset >= SIZE && (buffer.get(offset) & 0xF0) == 0x60;
+  }
+
+  public int getOffset() {
+    return this.offset;
+  }
+
+  public int getVersion() {
+    return (this.buffer.get(this.offset) & 0xF0) >> 4;
+  }
+
+  public int getTrafficClass() {
+    return this.buffer.getShort(this.offset) >> 4 & 0xFF;
+  }
+
+  public int getFlowLabel() {
+    return this.buffer.getInt(this.offset) & 0xFFFFF;
+  }
+
+  public int getPayloadLength() {
+    return Short.toUnsignedInt(this.buffer.getShort(this.offset + 4));
+  }
+
+  public int getNextHeader() {
+    return this.buffer.get(this.offset + 6) & 0xFF;
+  }
+
+  public int getHopLimit() {
+    return this.buffer.get(this.offset + 7) & 0xFF;
+  }
+
+  public long getSrcHigh() {
+    return this.buffer.getLong(this.offset + 8);
+  }
+
+  public long getSrcLow() {
+    return this.buffer.getLong(this.offset + 16);
+  }
+
+  public long getDstHigh() {
+    return this.buffer.getLong(this.offset + 24);
+  }
+
+  public long getDstLow() {
+    return this.buffer.getLong(this.offset + 32);
+  }
+
+  public int getSize() {
+    return SIZE;
+  }
+
+  /**
+   * Returns the protocol following the extension headers.
+   */
+  public int getUpperProtocol() {
+    this.walkExtensions();
+    return this.upperProtocol;
+  }
+
+  /**
+   * Returns the offset of the upper-layer header, after the extension headers.
+   */
+  public int getPayloadOffset() {
+    this.walkExtensions();
+    return this.upperOffset;
+  }
+
+  /**
+   * Returns whether a fragment header with a non-zero offset was found, i.e. the upper-layer header is not present.
+   */
+  public boolean isFragment() {
+    this.walkExtensions();
+    return this.fragment;
+  }
+
+  private void walkExtensions() {
+    if (this.upperProtocol >= 0) {
+      return;
+    }
+
+    int protocol = this.getNextHeader();
+    int offset = this.offset + SIZE;
+    boolean fragment = false;
+    int limit = this.buffer.limit();
+    for (int i = 0; i < MAX_EXTENSIONS && limit - offset >= 8; i++) {
+      if (protocol == 0 || protocol == 43 || protocol == 60) {
+        protocol = this.buffer.get(offset) & 0xFF;
+        offset += ((this.buffer.get(offset + 1) & 0xFF) + 1) * 8;
+      } else if (protocol == 51) {
+        protocol = this.buffer.get(offset) & 0xFF;
+        offset += ((this.buffer.get(offset + 1) & 0xFF) + 2) * 4;
+      } else if (protocol == 44) {
+        fragment = (this.buffer.getShort(offset + 2) & 0xFFF8) != 0;
+        protocol = this.buffer.get(offset) & 0xFF;
+        offset += 8;
+      } else {
+        break;
+      }
+    }
+
+    this.upperProtocol = protocol;
+    this.upperOffset = offset;
+    this.fragment = fragment;
+  }
+
+  @Override
+  public String toString() {
+    return "IPv6View{"
+        + "nextHeader=" + this.getNextHeader()
+        + ", srcHigh=" + this.getSrcHigh()
+        + ", srcLow=" + this.getSrcLow()
+        + ", dstHigh=" + this.getDstHigh()
+        + ", dstLow=" + this.getDstLow()
+        + '}';
+  }
+}
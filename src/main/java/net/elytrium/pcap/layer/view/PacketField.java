@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2022 - 2023 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.pcap.layer.view;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Fields that can be projected by a {@link FieldExtractor}. Unsigned values are widened, so -1 never collides with a
+ * real value. IPv6 addresses are split into high and low halves.
+ */
+public enum PacketField {
+  ETH_SRC("eth.src", PacketField.ETHERNET),
+  ETH_DST("eth.dst", PacketField.ETHERNET),
+  ETH_TYPE("eth.type", PacketField.LINK),
+  ETH_VLAN("eth.vlan", PacketField.ETHERNET),
+  IP_VERSION("ip.version", PacketField.IP),
+  IP_PROTOCOL("ip.protocol", PacketField.IP),
+  IPV4_SRC("ipv4.src", PacketField.IPV4),
+  IPV4_DST("ipv4.dst", PacketField.IPV4),
+  IPV4_TOS("ipv4.tos", PacketField.IPV4),
+  IPV4_LENGTH("ipv4.length", PacketField.IPV4),
+  IPV4_ID("ipv4.id", PacketField.IPV4),
+  IPV4_FRAG_OFFSET("ipv4.fragOffset", PacketField.IPV4),
+  IPV4_TTL("ipv4.ttl", PacketField.IPV4),
+  IPV6_SRC_HIGH("ipv6.srcHigh", PacketField.IPV6),
+  IPV6_SRC_LOW("ipv6.srcLow", PacketField.IPV6),
+  IPV6_DST_HIGH("ipv6.dstHigh", PacketField.IPV6),
+  IPV6_DST_LOW("ipv6.dstLow", PacketField.IPV6),
+  IPV6_FLOW_LABEL("ipv6.flowLabel", PacketField.IPV6),
+  IPV6_PAYLOAD_LENGTH("ipv6.payloadLength", PacketField.IPV6),
+  IPV6_HOP_LIMIT("ipv6.hopLimit", PacketField.IPV6),
+  TCP_SRC_PORT("tcp.srcPort", PacketField.TCP),
+  TCP_DST_PORT("tcp.dstPort", PacketField.TCP),
+  TCP_SEQUENCE("tcp.sequence", PacketField.TCP),
+  TCP_ACK_SN("tcp.ackSn", PacketField.TCP),
+  TCP_FLAGS("tcp.flags", PacketField.TCP),
+  TCP_WINDOW_SIZE("tcp.windowSize", PacketField.TCP),
+  UDP_SRC_PORT("udp.srcPort", PacketField.UDP),
+  UDP_DST_PORT("udp.dstPort", PacketField.UDP),
+  UDP_LENGTH("udp.length", PacketField.UDP),
+  PAYLOAD_OFFSET("payload.offset", PacketField.TRANSPORT),
+  PAYLOAD_LENGTH("payload.length", PacketField.TRANSPORT);
+
+  static final int ETHERNET = 0;
+  static final int LINK = 1;
+  static final int IP = 2;
+  static final int IPV4 = 3;
+  static final int IPV6 = 4;
+  static final int TRANSPORT = 5;
+  static final int TCP = 6;
+  static final int UDP = 7;
+
+  private static final Map<String, PacketField> REGISTRY = new HashMap<>();
+
+  static {
+    for (PacketField field : values()) {
+      REGISTRY.put(field.getName(), field);
+    }
+  }
+
+  private final String name;
+  private final int header;
+
+  PacketField(String name, int header) {
+    this.name = name;
+    this.header = header;
+  }
+
+  public String getName() {
+    return this.name;
+  }
+
+  /**
+   * Returns the header the field belongs to, used as a bit in the presence mask of a {@link FieldExtractor}.
+   */
+  int getHeader() {
+    return this.header;
+  }
+
+  public static PacketField getByName(String name) {
+    return REGISTRY.get(name);
+  }
+}
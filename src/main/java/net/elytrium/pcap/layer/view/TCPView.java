@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2022 - 2023 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.pcap.layer.view;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reusable view of a TCP header that reads fields straight from the buffer, options included.
+ */
+public class TCPView {
+
+  public static final int FIN = 0x001;
+  public static final int SYN = 0x002;
+  public static final int RST = 0x004;
+  public static final int PSH = 0x008;
+  public static final int ACK = 0x010;
+  public static final int URG = 0x020;
+  public static final int ECE = 0x040;
+  public static final int CWR = 0x080;
+  public static final int NS = 0x100;
+
+  private static final int MIN_SIZE = 20;
+
+  private ByteBuffer buffer;
+  private int offset;
+
+  public boolean wrap(ByteBuffer buffer, int offset) {
+    this.buffer = buffer;
+    this.offset = offset;
+    if (buffer.limit() - offset < MIN_SIZE) {
+      return false;
+    }
+
+    int size = this.getSize();
+    return size >= MIN_SIZE && buffer.limit() - offset >= size;
+  }
+
+  public int getOffset() {
+    return this.offset;
+  }
+
+  public int getSrcPort() {
+    return Short.toUnsignedInt(this.buffer.getShort(this.offset));
+  }
+
+  public int getDstPort() {
+    return Short.toUnsignedInt(this.buffer.getShort(this.offset + 2));
+  }
+
+  public long getSequence() {
+    return Integer.toUnsignedLong(this.buffer.getInt(this.offset + 4));
+  }
+
+  public long getAckSn() {
+    return Integer.toUnsignedLong(this.buffer.getInt(this.offset + 8));
+  }
+
+  public int getDataOffset() {
+    return (this.buffer.get(this.offset + 12) & 0xF0) >> 4;
+  }
+
+  /**
+   * Returns the flag bits, see the constants of this class.
+   */
+  public int getFlags() {
+    return this.buffer.getShort(this.offset + 12) & 0x1FF;
+  }
+
+  public boolean hasFlags(int flags) {
+    return (this.getFlags() & flags) == flags;
+  }
+
+  public int getWindowSize() {
+    return Short.toUnsignedInt(this.buffer.getShort(this.offset + 14));
+  }
+
+  public short getChecksum() {
+    return this.buffer.getShort(this.offset + 16);
+  }
+
+  public int getUrgPtr() {
+    return Short.toUnsignedInt(this.buffer.getShort(this.offset + 18));
+  }
+
+  /**
+   * Returns the offset of the first option of the kind, or -1. The option length byte follows the kind byte.
+   */
+  public int findOption(int kind) {
+    int index = this.offset + MIN_SIZE;
+    int end = this.offset + this.getSize();
+    while (index < end) {
+      int current = this.buffer.get(index) & 0xFF;
+      if (current == kind) {
+        return index;
+      }
+
+      if (current == 0) {
+        break;
+      } else if (current == 1) {
+        index++;
+      } else {
+        if (index + 1 >= end) {
+          break;
+        }
+
+        int length = this.buffer.get(index + 1) & 0xFF;
+        if (length < 2) {
+          break;
+        }
+
+        index += length;
+      }
+    }
+
+    return -1;
+  }
+
+  public int getSize() {
+    return this.getDataOffset() * 4;
+  }
+
+  public int getPayloadOffset() {
+    return this.offset + this.getSize();
+  }
+
+  @Override
+  public String toString() {
+    return "TCPView{"
+        + "srcPort=" + this.getSrcPort()
+        + ", dstPort=" + this.getDstPort()
+        + ", sequence=" + this.getSequence()
+        + ", ackSn=" + this.getAckSn()
+        + ", flags=" + this.getFlags()
+        + '}';
+  }
+}
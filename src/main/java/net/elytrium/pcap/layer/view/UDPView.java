@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2022 - 2023 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.pcap.layer.view;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reusable view of a UDP header that reads fields straight from the buffer.
+ */
+public class UDPView {
+
+  private static final int SIZE = 8;
+
+  private ByteBuffer buffer;
+  private int offset;
+
+  public boolean wrap(ByteBuffer buffer, int offset) {
+    this.buffer = buffer;
+    this.offset = offset;
+    return buffer.limit() - offset >= SIZE;
+  }
+
+  public int getOffset() {
+    return this.offset;
+  }
+
+  public int getSrcPort() {
+    return Short.toUnsignedInt(this.buffer.getShort(this.offset));
+  }
+
+  public int getDstPort() {
+    return Short.toUnsignedInt(this.buffer.getShort(this.offset + 2));
+  }
+
+  public int getLength() {
+    return Short.toUnsignedInt(this.buffer.getShort(this.offset + 4));
+  }
+
+  public short getChecksum() {
+    return this.buffer.getShort(this.offset + 6);
+  }
+
+  public int getSize() {
+    return SIZE;
+  }
+
+  public int getPayloadOffset() {
+    return this.offset + SIZE;
+  }
+
+  @Override
+  public String toString() {
+    return "UDPView{"
+        + "srcPort=" + this.getSrcPort()
+        + ", dstPort=" + this.getDstPort()
+        + ", length=" + this.getLength()
+        + '}';
+  }
+}
@@ -18,17 +18,23 @@
 package net.elytrium.pcap.memory;
 
 import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
 import sun.misc.Unsafe;
 
 public class MemoryUtil {
 
   private static final Unsafe UNSAFE;
+  private static final long ADDRESS_OFFSET;
+  private static final long CAPACITY_OFFSET;
 
   static {
     try {
       Field unsafeField = Unsafe.class.getDeclaredField("theUnsafe");
       unsafeField.setAccessible(true);
       UNSAFE = (Unsafe) unsafeField.get(null);
+      ADDRESS_OFFSET = UNSAFE.objectFieldOffset(Buffer.class.getDeclaredField("address"));
+      CAPACITY_OFFSET = UNSAFE.objectFieldOffset(Buffer.class.getDeclaredField("capacity"));
     } catch (ReflectiveOperationException e) {
       throw new IllegalStateException("Couldn't get unsafe.");
     }
@@ -37,4 +43,23 @@ public class MemoryUtil {
   public static Unsafe getUnsafe() {
     return UNSAFE;
   }
+
+  public static long getAddress(ByteBuffer buffer) {
+    if (!buffer.isDirect()) {
+      throw new UnsupportedOperationException("Only direct buffers are supported.");
+    }
+
+    return UNSAFE.getLong(buffer, ADDRESS_OFFSET);
+  }
+
+  public static ByteBuffer wrap(ByteBuffer buffer, long address, int length) {
+    if (!buffer.isDirect()) {
+      throw new UnsupportedOperationException("Only direct buffers are supported.");
+    }
+
+    UNSAFE.putLong(buffer, ADDRESS_OFFSET, address);
+    UNSAFE.putInt(buffer, CAPACITY_OFFSET, length);
+    buffer.clear();
+    return buffer;
+  }
 }
@@ -0,0 +1,266 @@
+/*
+ * Copyright (C) 2022 - 2023 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.pcap.pipeline;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.LockSupport;
+import net.elytrium.pcap.PcapException;
+import net.elytrium.pcap.data.PcapPacketHeaderView;
+import net.elytrium.pcap.data.PcapPacketView;
+import net.elytrium.pcap.data.TstampPrecision;
+import net.elytrium.pcap.handle.PcapHandle;
+import net.elytrium.pcap.layer.FlowKey;
+import net.elytrium.pcap.layer.data.LinkType;
+import net.elytrium.pcap.memory.MemoryUtil;
+
+/**
+ * Copies captured packets into one single-producer ring per worker, choosing the worker by a symmetric
+ * 5-tuple hash so that both directions of a flow are always processed by the same thread.
+ */
+public class CapturePipeline {
+
+  public static final int DEFAULT_RING_CAPACITY = 16 * 1024 * 1024;
+
+  private static final int IDLE_SPINS = 100;
+  private static final long IDLE_PARK_NANOS = 50_000;
+
+  private final PcapHandle handle;
+  private final LinkType linkType;
+  private final TstampPrecision precision;
+  private final PipelineHandler handler;
+  private final ThreadFactory threadFactory;
+  private final PacketRing[] rings;
+  private final Thread[] threads;
+  private final FlowKey flowKey = new FlowKey();
+  private volatile boolean running;
+  private boolean closed;
+  private Thread captureThread;
+  private Thread freeOwner;
+
+  public CapturePipeline(PcapHandle handle, int workers, int ringCapacity, PipelineHandler handler, ThreadFactory threadFactory)
+      throws PcapException {
+    if (workers <= 0) {
+      throw new IllegalArgumentException("At least one worker is required.");
+    }
+
+    this.handle = Objects.requireNonNull(handle, "handle");
+    this.handler = Objects.requireNonNull(handler, "handler");
+    this.threadFactory = Objects.requireNonNull(threadFactory, "threadFactory");
+    this.linkType = handle.datalink();
+    this.precision = handle.getTstampPrecision();
+    this.rings = new PacketRing[workers];
+    this.threads = new Thread[workers];
+    for (int i = 0; i < workers; i++) {
+      this.rings[i] = new PacketRing(ringCapacity);
+    }
+  }
+
+  public CapturePipeline(PcapHandle handle, int workers, PipelineHandler handler) throws PcapException {
+    this(handle, workers, DEFAULT_RING_CAPACITY, handler, Executors.defaultThreadFactory());
+  }
+
+  public synchronized void start() {
+    if (this.closed) {
+      throw new IllegalStateException("Pipeline is closed.");
+    }
+
+    if (this.running) {
+      return;
+    }
+
+    this.running = true;
+    for (int i = 0; i < this.threads.length; i++) {
+      int worker = i;
+      this.threads[i] = this.threadFactory.newThread(() -> this.work(worker));
+      this.threads[i].start();
+    }
+  }
+
+  public void loop(int count) throws PcapException {
+    this.enterCapture();
+    try {
+      this.handle.loopView(count, new PcapPacketView(this.precision), this::publish);
+    } finally {
+      this.exitCapture();
+    }
+  }
+
+  public int dispatch(int count) throws PcapException {
+    this.enterCapture();
+    try {
+      return this.handle.dispatchView(count, new PcapPacketView(this.precision), this::publish);
+    } finally {
+      this.exitCapture();
+    }
+  }
+
+  private synchronized void enterCapture() {
+    this.start();
+    if (this.captureThread != null) {
+      throw new IllegalStateException("Pipeline is already capturing on " + this.captureThread.getName());
+    }
+
+    this.captureThread = Thread.currentThread();
+  }
+
+  private synchronized void exitCapture() {
+    this.captureThread = null;
+    this.freeIfOwner();
+
+    this.notifyAll();
+  }
+
+  private void publish(PcapPacketHeaderView header, ByteBuffer buffer) {
+    if (!this.running) {
+      return;
+    }
+
+    int worker = 0;
+    if (this.rings.length > 1 && this.flowKey.decode(buffer, this.linkType)) {
+      worker = (int) (((this.flowKey.symmetricHash() & 0xFFFFFFFFL) * this.rings.length) >>> 32);
+    }
+
+    this.rings[worker].offer(header.getAddress(), MemoryUtil.getAddress(buffer), header.getCaptureLength());
+  }
+
+  private void work(int worker) {
+    PacketRing ring = this.rings[worker];
+    PcapPacketView view = new PcapPacketView(this.precision);
+    int idle = 0;
+    while (true) {
+      if (ring.peek(view)) {
+        try {
+          this.handler.handle(worker, view.getHeader(), view.getByteBuffer());
+        } catch (RuntimeException e) {
+          this.handler.exceptionCaught(worker, e);
+        } finally {
+          ring.release(view);
+        }
+
+        idle = 0;
+      } else if (!this.running) {
+        break;
+      } else if (++idle < IDLE_SPINS) {
+        Thread.yield();
+      } else {
+        LockSupport.parkNanos(IDLE_PARK_NANOS);
+      }
+    }
+
+    synchronized (this) {
+      this.freeIfOwner();
+    }
+  }
+
+  /**
+   * Stops the capture and the workers, then frees the rings. A capture running on another thread is broken and waited
+   * for. When called from the capture thread itself, the rings are freed once {@link #loop} or {@link #dispatch}
+   * returns, and when called from a worker, once that worker exits.
+   */
+  public void close() throws InterruptedException {
+    synchronized (this) {
+      if (this.closed) {
+        return;
+      }
+
+      this.closed = true;
+      this.running = false;
+      if (this.captureThread != null) {
+        this.handle.breakLoop();
+      }
+
+      Thread current = Thread.currentThread();
+      if (this.captureThread == current || this.isWorker(current)) {
+        this.freeOwner = current;
+      }
+
+      if (this.captureThread != current) {
+        while (this.captureThread != null) {
+          this.wait();
+        }
+      }
+    }
+
+    for (Thread thread : this.threads) {
+      if (thread != null && thread != Thread.currentThread()) {
+        thread.join();
+      }
+    }
+
+    synchronized (this) {
+      if (this.freeOwner == null) {
+        this.free();
+      }
+    }
+  }
+
+  private boolean isWorker(Thread thread) {
+    for (Thread worker : this.threads) {
+      if (worker == thread) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  private void freeIfOwner() {
+    if (this.freeOwner != null && this.freeOwner == Thread.currentThread()) {
+      this.freeOwner = null;
+      this.free();
+    }
+  }
+
+  private void free() {
+    for (PacketRing ring : this.rings) {
+      ring.free();
+    }
+  }
+
+  public int getWorkers() {
+    return this.rings.length;
+  }
+
+  public long getQueueDepth(int worker) {
+    return this.rings[worker].getQueueDepth();
+  }
+
+  public long getQueuedBytes(int worker) {
+    return this.rings[worker].getQueuedBytes();
+  }
+
+  public long getEnqueued(int worker) {
+    return this.rings[worker].getEnqueued();
+  }
+
+  public long getDropped(int worker) {
+    return this.rings[worker].getDropped();
+  }
+
+  public long getDropped() {
+    long dropped = 0;
+    for (PacketRing ring : this.rings) {
+      dropped += ring.getDropped();
+    }
+
+    return dropped;
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2022 - 2023 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.pcap.pipeline;
+
+import java.util.concurrent.atomic.AtomicLong;
+import net.elytrium.pcap.data.PcapBatch;
+import net.elytrium.pcap.data.PcapPacketView;
+import net.elytrium.pcap.memory.MemoryUtil;
+import sun.misc.Unsafe;
+
+class PacketRing {
+
+  private static final long PADDING = Long.MIN_VALUE;
+
+  private final Unsafe unsafe = MemoryUtil.getUnsafe();
+  private final long address;
+  private final int capacity;
+  private final int mask;
+  private final AtomicLong head = new AtomicLong();
+  private final AtomicLong tail = new AtomicLong();
+  private final AtomicLong enqueued = new AtomicLong();
+  private final AtomicLong dequeued = new AtomicLong();
+  private final AtomicLong dropped = new AtomicLong();
+  private long cachedTail;
+
+  PacketRing(int capacity) {
+    if (Integer.bitCount(capacity) != 1 || capacity < PcapBatch.HEADER_SIZE * 2) {
+      throw new IllegalArgumentException("Ring capacity must be a power of two.");
+    }
+
+    this.capacity = capacity;
+    this.mask = capacity - 1;
+    this.address = this.unsafe.allocateMemory(capacity);
+  }
+
+  boolean offer(long headerAddress, long dataAddress, int captureLength) {
+    int size = PcapBatch.HEADER_SIZE + captureLength + 7 & ~0x7;
+    long head = this.head.get();
+    int offset = (int) (head & this.mask);
+    int padding = offset + size > this.capacity ? this.capacity - offset : 0;
+    if (size > this.capacity / 2 || !this.hasSpace(head, padding + size)) {
+      this.dropped.lazySet(this.dropped.get() + 1);
+      return false;
+    }
+
+    if (padding != 0) {
+      this.unsafe.putLong(this.address + offset, PADDING);
+      offset = 0;
+    }
+
+    long record = this.address + offset;
+    this.unsafe.copyMemory(headerAddress, record, PcapBatch.HEADER_SIZE);
+    this.unsafe.copyMemory(dataAddress, record + PcapBatch.HEADER_SIZE, captureLength);
+    this.enqueued.lazySet(this.enqueued.get() + 1);
+    this.head.lazySet(head + padding + size);
+    return true;
+  }
+
+  private boolean hasSpace(long head, int size) {
+    if (head + size - this.cachedTail <= this.capacity) {
+      return true;
+    }
+
+    this.cachedTail = this.tail.get();
+    return head + size - this.cachedTail <= this.capacity;
+  }
+
+  boolean peek(PcapPacketView view) {
+    long tail = this.tail.get();
+    if (tail == this.head.get()) {
+      return false;
+    }
+
+    int offset = (int) (tail & this.mask);
+    if (this.unsafe.getLong(this.address + offset) == PADDING) {
+      tail += this.capacity - offset;
+      this.tail.lazySet(tail);
+      offset = 0;
+    }
+
+    long record = this.address + offset;
+    view.wrap(record, record + PcapBatch.HEADER_SIZE);
+    return true;
+  }
+
+  void release(PcapPacketView view) {
+    int size = PcapBatch.HEADER_SIZE + view.getHeader().getCaptureLength() + 7 & ~0x7;
+    this.dequeued.lazySet(this.dequeued.get() + 1);
+    this.tail.lazySet(this.tail.get() + size);
+  }
+
+  long getQueueDepth() {
+    return this.enqueued.get() - this.dequeued.get();
+  }
+
+  long getQueuedBytes() {
+    return this.head.get() - this.tail.get();
+  }
+
+  long getEnqueued() {
+    return this.enqueued.get();
+  }
+
+  long getDropped() {
+    return this.dropped.get();
+  }
+
+  int getCapacity() {
+    return this.capacity;
+  }
+
+  void free() {
+    this.unsafe.freeMemory(this.address);
+  }
+}
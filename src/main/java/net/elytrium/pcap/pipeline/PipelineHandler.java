@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2022 - 2023 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.pcap.pipeline;
+
+import java.nio.ByteBuffer;
+import net.elytrium.pcap.data.PcapPacketHeaderView;
+
+public interface PipelineHandler {
+
+  void handle(int worker, PcapPacketHeaderView header, ByteBuffer buffer);
+
+  /**
+   * Called on the worker thread when {@link #handle} throws. The worker keeps running afterwards. By default the
+   * exception is passed to the uncaught exception handler of the worker thread.
+   */
+  default void exceptionCaught(int worker, RuntimeException e) {
+    Thread thread = Thread.currentThread();
+    thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+  }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2022 - 2023 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.pcap.handle;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+import net.elytrium.pcap.PcapException;
+import net.elytrium.pcap.PcapNative;
+
+/**
+ * JDK 21+ variant: virtual threads park until a shared epoll thread reports the fd as readable,
+ * so they never pin their carrier inside a blocking native call. If epoll is unavailable or fails,
+ * virtual threads fall back to the blocking poll.
+ */
+class PcapPoller {
+
+  static boolean awaitReadable(int fd, int timeout) throws PcapException {
+    if (Thread.currentThread().isVirtual()) {
+      VirtualPoller poller = VirtualPoller.INSTANCE;
+      if (poller != null && !poller.failed) {
+        return poller.await(fd, timeout);
+      }
+    }
+
+    return pollReadable(fd, timeout);
+  }
+
+  private static boolean pollReadable(int fd, int timeout) throws PcapException {
+    int result = PcapNative.pollReadable(fd, timeout);
+    if (result < 0) {
+      throw new PcapException(PcapNative.getErrorBuffer());
+    }
+
+    return result > 0;
+  }
+
+  private static class VirtualPoller {
+
+    private static final VirtualPoller INSTANCE = create();
+
+    private static final int EPOLL_CTL_ADD = 1;
+    private static final int EPOLL_CTL_DEL = 2;
+    private static final int EPOLLIN = 0x001;
+    private static final int EPOLLONESHOT = 1 << 30;
+
+    private final int epfd;
+    private final int[] ready = new int[256];
+    private volatile Waiter[] waiters = new Waiter[64];
+    private volatile boolean failed;
+
+    private VirtualPoller(int epfd) {
+      this.epfd = epfd;
+      Thread thread = new Thread(this::run, "pcap-virtual-poller");
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+    private static VirtualPoller create() {
+      try {
+        int epfd = PcapNative.epollCreate();
+        return epfd < 0 ? null : new VirtualPoller(epfd);
+      } catch (UnsatisfiedLinkError e) {
+        return null;
+      }
+    }
+
+    private boolean await(int fd, int timeout) throws PcapException {
+      Waiter waiter = new Waiter(Thread.currentThread());
+      int id = this.register(waiter);
+      try {
+        if (PcapNative.epollCtl(this.epfd, EPOLL_CTL_ADD, fd, EPOLLIN | EPOLLONESHOT, id) < 0) {
+          if (this.failed) {
+            return pollReadable(fd, timeout);
+          }
+
+          throw new PcapException(PcapNative.getErrorBuffer());
+        }
+
+        long deadline = System.nanoTime() + timeout * 1_000_000L;
+        while (!waiter.ready) {
+          if (this.failed) {
+            int remaining = timeout < 0 ? -1 : (int) Math.max(0, (deadline - System.nanoTime()) / 1_000_000L);
+            return pollReadable(fd, remaining);
+          }
+
+          // park returns at once while the interrupt flag is set; like an interrupted poll, report not readable.
+          if (Thread.currentThread().isInterrupted()) {
+            break;
+          }
+
+          if (timeout < 0) {
+            LockSupport.park(this);
+          } else {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+              break;
+            }
+
+            LockSupport.parkNanos(this, remaining);
+          }
+        }
+
+        return waiter.ready;
+      } finally {
+        PcapNative.epollCtl(this.epfd, EPOLL_CTL_DEL, fd, 0, id);
+        this.unregister(id);
+      }
+    }
+
+    private synchronized int register(Waiter waiter) {
+      Waiter[] waiters = this.waiters;
+      for (int id = 0; id < waiters.length; id++) {
+        if (waiters[id] == null) {
+          waiters[id] = waiter;
+          return id;
+        }
+      }
+
+      int id = waiters.length;
+      waiters = Arrays.copyOf(waiters, id * 2);
+      waiters[id] = waiter;
+      this.waiters = waiters;
+      return id;
+    }
+
+    private synchronized void unregister(int id) {
+      this.waiters[id] = null;
+    }
+
+    private void run() {
+      while (true) {
+        int count = PcapNative.epollWait(this.epfd, this.ready, -1);
+        if (count < 0) {
+          this.fail();
+          return;
+        }
+
+        Waiter[] waiters = this.waiters;
+        for (int i = 0; i < count; i++) {
+          int id = this.ready[i];
+          Waiter waiter = id < waiters.length ? waiters[id] : null;
+          if (waiter != null) {
+            waiter.ready = true;
+            LockSupport.unpark(waiter.thread);
+          }
+        }
+      }
+    }
+
+    private synchronized void fail() {
+      this.failed = true;
+      for (Waiter waiter : this.waiters) {
+        if (waiter != null) {
+          LockSupport.unpark(waiter.thread);
+        }
+      }
+    }
+  }
+
+  private static class Waiter {
+
+    private final Thread thread;
+    private volatile boolean ready;
+
+    private Waiter(Thread thread) {
+      this.thread = thread;
+    }
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2022 - 2023 Elytrium
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.elytrium.pcap.reactive;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import net.elytrium.pcap.PcapException;
+import net.elytrium.pcap.PcapViewHandler;
+import net.elytrium.pcap.data.PcapPacketHeaderView;
+import net.elytrium.pcap.data.PcapPacketView;
+import net.elytrium.pcap.data.PcapRawPacket;
+import net.elytrium.pcap.handle.PcapHandle;
+
+/**
+ * Publishes packets of a single handle. Outstanding demand is the only thing that drives libpcap:
+ * each drain calls {@code dispatch} for at most the requested amount, and stops calling into libpcap
+ * once demand reaches zero, leaving unread packets in the kernel buffer instead of on the heap.
+ */
+public class PcapPublisher implements Flow.Publisher<PcapRawPacket> {
+
+  private static final int DEFAULT_BATCH_SIZE = 64;
+  private static final int POLL_TIMEOUT = 100;
+
+  private final PcapHandle handle;
+  private final Executor executor;
+  private final int batchSize;
+  private final AtomicBoolean subscribed = new AtomicBoolean();
+
+  public PcapPublisher(PcapHandle handle, Executor executor, int batchSize) {
+    if (batchSize <= 0) {
+      throw new IllegalArgumentException("batchSize should be positive");
+    }
+
+    this.handle = Objects.requireNonNull(handle, "handle");
+    this.executor = Objects.requireNonNull(executor, "executor");
+    this.batchSize = batchSize;
+  }
+
+  public PcapPublisher(PcapHandle handle) {
+    this(handle, task -> Thread.ofVirtual().name("pcap-publisher").start(task), DEFAULT_BATCH_SIZE);
+  }
+
+  @Override
+  public void subscribe(Flow.Subscriber<? super PcapRawPacket> subscriber) {
+    Objects.requireNonNull(subscriber, "subscriber");
+    if (!this.subscribed.compareAndSet(false, true)) {
+      subscriber.onSubscribe(new Flow.Subscription() {
+        @Override
+        public void request(long n) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+      });
+      subscriber.onError(new IllegalStateException("PcapPublisher supports only one subscriber"));
+      return;
+    }
+
+    PcapSubscription subscription = new PcapSubscription(subscriber);
+    subscriber.onSubscribe(subscription);
+  }
+
+  private class PcapSubscription implements Flow.Subscription, PcapViewHandler {
+
+    private final Flow.Subscriber<? super PcapRawPacket> subscriber;
+    private final AtomicLong demand = new AtomicLong();
+    private final AtomicInteger wip = new AtomicInteger();
+    private final PcapPacketView view;
+    private volatile boolean cancelled;
+    private volatile Throwable requestError;
+    private boolean prepared;
+    private boolean offline;
+    private int timeout;
+
+    private PcapSubscription(Flow.Subscriber<? super PcapRawPacket> subscriber) {
+      this.subscriber = subscriber;
+      this.view = new PcapPacketView(PcapPublisher.this.handle.getTstampPrecision());
+    }
+
+    @Override
+    public void request(long n) {
+      if (n <= 0) {
+        // Signals must be serial, so the error is delivered by the drain.
+        this.requestError = new IllegalArgumentException("Non-positive request: " + n);
+        this.schedule();
+        return;
+      }
+
+      long current;
+      long next;
+      do {
+        current = this.demand.get();
+        if (current == Long.MAX_VALUE) {
+          return;
+        }
+
+        next = current + n < 0 ? Long.MAX_VALUE : current + n;
+      } while (!this.demand.compareAndSet(current, next));
+
+      this.schedule();
+    }
+
+    /**
+     * Stops the drain after the current batch. Every dispatch is bounded by the batch size and live handles are in
+     * non-blocking mode, so the handle is never broken out of a loop; a stray break flag would make its next dispatch
+     * return immediately.
+     */
+    @Override
+    public void cancel() {
+      this.cancelled = true;
+    }
+
+    @Override
+    public void handle(PcapPacketHeaderView header, ByteBuffer buffer) {
+      ByteBuffer copy = ByteBuffer.allocate(buffer.remaining());
+      copy.put(buffer.duplicate()).flip();
+      this.demand.decrementAndGet();
+      this.subscriber.onNext(new PcapRawPacket(header.copy(), copy));
+    }
+
+    private void schedule() {
+      if (this.wip.getAndIncrement() == 0) {
+        PcapPublisher.this.executor.execute(this::drain);
+      }
+    }
+
+    private void drain() {
+      int missed = 1;
+      try {
+        this.prepare();
+        do {
+          if (this.requestError != null) {
+            if (!this.cancelled) {
+              this.cancelled = true;
+              this.subscriber.onError(this.requestError);
+            }
+
+            return;
+          }
+
+          long requested;
+          while (!this.cancelled && this.requestError == null && (requested = this.demand.get()) > 0) {
+            int count = (int) Math.min(requested, PcapPublisher.this.batchSize);
+            if (PcapPublisher.this.handle.dispatchView(count, this.view, this) == 0) {
+              if (this.offline) {
+                this.cancelled = true;
+                this.subscriber.onComplete();
+                return;
+              }
+
+              PcapPublisher.this.handle.awaitReadable(this.timeout);
+            }
+          }
+
+          missed = this.wip.addAndGet(-missed);
+        } while (missed != 0);
+      } catch (Throwable t) {
+        if (!this.cancelled) {
+          this.cancelled = true;
+          this.subscriber.onError(t);
+        }
+      }
+    }
+
+    private void prepare() throws PcapException {
+      if (this.prepared) {
+        return;
+      }
+
+      this.prepared = true;
+      this.offline = PcapPublisher.this.handle.file() != 0;
+      if (!this.offline) {
+        PcapPublisher.this.handle.setNonBlock(1);
+        int required = PcapPublisher.this.handle.getRequiredSelectTimeout();
+        this.timeout = required < 0 ? POLL_TIMEOUT : Math.min(required, POLL_TIMEOUT);
+      }
+    }
+  }
+}